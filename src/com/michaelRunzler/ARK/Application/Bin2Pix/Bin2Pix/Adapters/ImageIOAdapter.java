@@ -0,0 +1,85 @@
+package Bin2Pix.Adapters;
+
+import Bin2Pix.Core.B2PCore;
+import Bin2Pix.Core.ConversionException;
+import Bin2Pix.Core.EncodingSchema;
+import Bin2Pix.Core.ImageAdapter;
+import Bin2Pix.Core.Pixel;
+
+import javax.imageio.ImageIO;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base class for adapters that encode images with one of the standard {@link ImageIO} writers.
+ * All pixel data is written straight into the byte array backing a {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR}
+ * image, rather than being set pixel by pixel through the image's colour model.
+ */
+public abstract class ImageIOAdapter implements ImageAdapter
+{
+    private final String formatName;
+    private final boolean encodesByRow;
+    private final String[] extensions;
+
+    /**
+     * @param formatName the informal {@link ImageIO} name of the format to write
+     * @param encodesByRow true if the format's writer requests images from the source one row at a time
+     * @param extensions the file extension filters handled by this adapter, in order of preference
+     */
+    protected ImageIOAdapter(String formatName, boolean encodesByRow, String... extensions)
+    {
+        this.formatName = formatName;
+        this.encodesByRow = encodesByRow;
+        this.extensions = extensions;
+    }
+
+    @Override
+    public byte[] convert(Pixel[] data, EncodingSchema method) throws ConversionException
+    {
+        int[] res = B2PCore.getResolution(data.length, method);
+        if(res[0] <= 0 || res[1] <= 0) throw new ConversionException("Not enough pixel data to form an image");
+
+        // Only as many pixels as fit into the image are used, in row order.
+        int count = res[0] * res[1];
+        byte[] packed = new byte[count * 3];
+        for(int i = 0; i < count; i++){
+            Pixel pix = data[i];
+            packed[i * 3] = (byte)(pix.b + 128);
+            packed[i * 3 + 1] = (byte)(pix.g + 128);
+            packed[i * 3 + 2] = (byte)(pix.r + 128);
+        }
+
+        return convert(packed, res[0], res[1]);
+    }
+
+    @Override
+    public byte[] convert(byte[] data, int width, int height) throws ConversionException
+    {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        write(B2PCore.createImage(data, width, height), bs);
+
+        return bs.toByteArray();
+    }
+
+    @Override
+    public void write(RenderedImage image, OutputStream out) throws ConversionException
+    {
+        try {
+            if(!ImageIO.write(image, formatName, out)) throw new ConversionException("No " + formatName + " encoder is available");
+        } catch (IOException e) {
+            throw new ConversionException("IO exception while computing output stream: " + (e.getMessage() == null ? "null" : e.getMessage()));
+        }
+    }
+
+    @Override
+    public boolean encodesByRow() {
+        return encodesByRow;
+    }
+
+    @Override
+    public String[] getHandledExtensions() {
+        return extensions.clone();
+    }
+}
@@ -4,8 +4,7 @@ package Bin2Pix;
 import Bin2Pix.Adapters.BMPAdapter;
 import Bin2Pix.Adapters.JPEGAdapter;
 import Bin2Pix.Adapters.PNGAdapter;
-import Bin2Pix.Core.B2PCore;
-import Bin2Pix.Core.ConversionException;
+import Bin2Pix.Core.B2PBatchConverter;
 import Bin2Pix.Core.EncodingSchema;
 import Bin2Pix.Core.ImageAdapter;
 import core.CoreUtil.AUNIL.LogEventLevel;
@@ -76,6 +75,8 @@ public class B2PGUI extends Application
     private File lastDest = null;
     private ArrayList<File> sources = null;
     private boolean hasSeenWarning = false;
+    private Service<ArrayList<Exception>> conversionSvc = null;
+    private B2PBatchConverter converter = null;
 
     private XLoggerInterpreter log;
 
@@ -251,14 +252,6 @@ public class B2PGUI extends Application
 
             if(f == null) return;
 
-            // Check individual file size. We don't really care about TOTAL size, just individual size, so that we don't run out of memory.
-            for(File x : f){
-                if(x.length() > B2PCore.MAX_DATA_LENGTH){
-                    new ARKInterfaceAlert("Warning", "One or more files exceed the maximum allowed file size of " + (B2PCore.MAX_DATA_LENGTH / 1048576L/*1 MB*/) + " MB.", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.50 * SCALE)).display();
-                    return;
-                }
-            }
-
             if(f.size() > 0){
                 if(sources == null || sources.size() == 0){
                     sources = new ArrayList<>();
@@ -305,6 +298,20 @@ public class B2PGUI extends Application
 
     private void convert()
     {
+        // The convert button doubles as a cancel button while a conversion is running. Cancelling only stops new files
+        // from being started, so the service keeps running (and the button stays in its cancel state) until the files
+        // already being converted have finished.
+        if(conversionSvc != null && conversionSvc.isRunning()){
+            if(converter.isCancelled()){
+                new ARKInterfaceAlert("Notice", "Cancelling. Files that are already being converted will be finished first.", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.25 * SCALE)).display();
+            }else if(new ARKInterfaceDialogYN("Query", "Cancel the current conversion? Files that are already being converted will be finished first.",
+                    "Yes", "No", (int)(DEFAULT_DIALOG_SIZE * 2 * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.5 * SCALE)).display()){
+                log.logEvent("Cancelling conversion...");
+                converter.cancel();
+            }
+            return;
+        }
+
         // UI confirmation and state checking
         if(sources == null || sources.size() == 0){
             new ARKInterfaceAlert("Notice", "Select one or more source files to continue.", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.25 * SCALE)).display();
@@ -335,48 +342,41 @@ public class B2PGUI extends Application
         int len = lengthPref.getText().length() == 0 ? 1 : Integer.parseInt(lengthPref.getText()) == 0 ? 1 : Integer.parseInt(lengthPref.getText());
         ImageAdapter adapter = adapters.get(format.getSelectionModel().getSelectedItem());
         String extension = adapter.getHandledExtensions()[0].substring(1, adapter.getHandledExtensions()[0].length());
+        boolean replace = overwrite.isSelected();
+        List<File> batch = new ArrayList<>(sources);
+        File dest = lastDest;
         
         log.logEvent(LogEventLevel.DEBUG, "Aspect ratio: " + aspectX + ":" + aspectY);
         log.logEvent(LogEventLevel.DEBUG, "Mark-space ratio: " + msr);
         log.logEvent(LogEventLevel.DEBUG, "Sample length: " + len);
 
-        Service conversionSvc = new Service() {
+        // Files are converted in parallel, as many at once as the converter's memory budget allows.
+        converter = new B2PBatchConverter();
+        B2PBatchConverter active = converter;
+
+        conversionSvc = new Service<ArrayList<Exception>>() {
             @Override
-            protected Task createTask() {
-                return new Task() {
+            protected Task<ArrayList<Exception>> createTask() {
+                return new Task<ArrayList<Exception>>() {
                     @Override
-                    protected Object call() {
+                    protected ArrayList<Exception> call() {
                         XLoggerInterpreter xl = new XLoggerInterpreter("Bin2Pix Conversion Worker");
-                        ArrayList<Exception> errors = new ArrayList<>();
-
-                        // Iterate through the list of source files, and convert each one after checking the source and dest
-                        for(int i = 0; i < sources.size(); i++)
-                        {
-                            xl.logEvent("Processing file " + (i + 1) + " of " + sources.size() + "...");
-                            
-                            File f = sources.get(i);
-                            try {
-                                File dest = new File(lastDest, f.getName() + extension);
-
-                                if(dest.exists() && overwrite.isSelected()){
-                                    if(!dest.delete()) throw new IOException("Could not delete existing file");
-                                }else if(dest.exists() && !overwrite.isSelected()){
-                                    throw new IOException("Destination file already exists");
-                                }
-
-                                B2PCore.B2PFile2File(f, dest, new EncodingSchema(msr, len, aspectX, aspectY, adapter));
-                                xl.logEvent("Done processing with no errors.");
-                            } catch (IOException | ConversionException e) {
-                                errors.add(e);
-                                xl.logEvent(LogEventLevel.ERROR, "Encountered non-fatal error, see below for details.");
-                                xl.logEvent(LogEventLevel.ERROR, e);
-                            } finally {
-                                // garbage collect, because apparently Java can't automatically reclaim the memory used by the old arrays
-                                System.gc();
+
+                        xl.logEvent(LogEventLevel.DEBUG, "Worker count: " + active.getWorkerCount());
+                        xl.logEvent(LogEventLevel.DEBUG, "Memory budget: " + (active.getMemoryBudget() / 1048576L) + " MB");
+
+                        ArrayList<Exception> errors = active.convert(batch, dest, extension, replace,
+                                new EncodingSchema(msr, len, aspectX, aspectY, adapter), (src, error, completed, total) ->{
+                            if(error == null){
+                                xl.logEvent("Processed file " + completed + " of " + total + " (" + src.getName() + ") with no errors.");
+                            }else{
+                                xl.logEvent(LogEventLevel.ERROR, "Encountered non-fatal error processing " + src.getName() + ", see below for details.");
+                                xl.logEvent(LogEventLevel.ERROR, error);
                             }
-                            updateProgress(i + 1, sources.size());
-                        }
-                        xl.logEvent("Batch complete with " + errors.size() + " errors.");
+                            updateProgress(completed, total);
+                        });
+
+                        xl.logEvent((active.isCancelled() ? "Batch cancelled" : "Batch complete") + " with " + errors.size() + " errors.");
                         xl.disassociate();
                         return errors;
                     }
@@ -388,8 +388,8 @@ public class B2PGUI extends Application
         conversionSvc.progressProperty().addListener((observable, oldValue, newValue) -> progress.setProgress(newValue.doubleValue()));
 
         conversionSvc.setOnSucceeded(e ->{
-            ArrayList<Exception> result = conversionSvc.getValue() instanceof ArrayList ? (ArrayList<Exception>) conversionSvc.getValue() : null;
-            handleResultFromConversion(result);
+            if(active.isCancelled()) log.logEvent("Conversion cancelled.");
+            handleResultFromConversion(conversionSvc.getValue(), active.isCancelled());
         });
 
         conversionSvc.setOnFailed(e ->{
@@ -397,15 +397,16 @@ public class B2PGUI extends Application
                 new ARKInterfaceAlert("Warning", "Conversion encountered a fatal error. Please try again.", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.5 * SCALE)).display();
                 progress.setProgress(0.0);
                 progressActiveIndicator.setVisible(false);
+                convert.setText("Convert");
                 conversionSvc.getException().printStackTrace();
                 return;
             }
 
-            ArrayList<Exception> result = conversionSvc.getValue() instanceof ArrayList ? (ArrayList<Exception>) conversionSvc.getValue() : null;
-            handleResultFromConversion(result);
+            handleResultFromConversion(conversionSvc.getValue(), false);
         });
 
         progressActiveIndicator.setVisible(true);
+        convert.setText("Cancel");
         
         log.logEvent("Starting conversion service...");
 
@@ -413,15 +414,16 @@ public class B2PGUI extends Application
     }
 
     // Pushed into a method because it would otherwise involve a lot of copied code and headaches later down the line.
-    private void handleResultFromConversion(ArrayList<Exception> result)
+    private void handleResultFromConversion(ArrayList<Exception> result, boolean cancelled)
     {
         progress.setProgress(0.0);
         progressActiveIndicator.setVisible(false);
+        convert.setText("Convert");
 
         if(result == null || result.size() == 0){
-            new ARKInterfaceAlert("Notice", "Conversion complete with no errors!", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.25 * SCALE)).display();
+            new ARKInterfaceAlert("Notice", cancelled ? "Conversion cancelled." : "Conversion complete with no errors!", (int)(DEFAULT_DIALOG_SIZE * SCALE), (int)(DEFAULT_DIALOG_SIZE * 1.25 * SCALE)).display();
         }else{
-            new ARKInterfaceAlert("Notice", "Conversion completed with errors, written to errors.txt in your user desktop directory.", (int)(DEFAULT_DIALOG_SIZE * SCALE * 2), (int)(DEFAULT_DIALOG_SIZE * SCALE * 2)).display();
+            new ARKInterfaceAlert("Notice", (cancelled ? "Conversion cancelled" : "Conversion completed") + " with errors, written to errors.txt in your user desktop directory.", (int)(DEFAULT_DIALOG_SIZE * SCALE * 2), (int)(DEFAULT_DIALOG_SIZE * SCALE * 2)).display();
 
             try {
                 log.logEvent("Writing error report...");
@@ -468,14 +470,13 @@ public class B2PGUI extends Application
                     i++;
                 }
             }
-            System.gc();
         }
     }
 
     private void setTooltips()
     {
         exit.setTooltip(new Tooltip("Exit the program."));
-        convert.setTooltip(new Tooltip("Start the conversion process with current settings."));
+        convert.setTooltip(new Tooltip("Start the conversion process with current settings, or cancel it if it is already running."));
         sourceSelect.setTooltip(new Tooltip("Select one or more source files for the conversion process."));
         destSelect.setTooltip(new Tooltip("Select the output directory for the results from the conversion process."));
         aspectRatioNum.setTooltip(new Tooltip("The horizontal component of the desired aspect ratio. Leave blank to default this setting."));
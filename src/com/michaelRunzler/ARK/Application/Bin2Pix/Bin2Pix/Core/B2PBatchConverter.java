@@ -0,0 +1,198 @@
+package Bin2Pix.Core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts batches of files on a fixed pool of worker threads. Before a file is started, its heap cost is estimated with
+ * {@link B2PCore#estimateMemoryCost(File, EncodingSchema)}, and it waits until that much of the converter's memory
+ * budget is free. This keeps the batch as a whole within the budget no matter how many workers there are, so that many
+ * small files can be converted at once while very large ones are given room to themselves. A file whose estimate is
+ * larger than the entire budget is run on its own.
+ * Source files that would be written to the same destination file are converted one after another, in the order that
+ * they were given, so that they cannot overwrite each other part-way through.
+ * Each converter runs one batch at a time.
+ */
+public class B2PBatchConverter
+{
+    // Budget is tracked in units of this many bytes, so that it fits into a semaphore's permit count.
+    private static final int BUDGET_UNIT = 1024;
+
+    /**
+     * Receives progress updates from a running batch. Called from worker threads, once per file, as each file finishes.
+     */
+    public interface ProgressListener
+    {
+        /**
+         * @param src the file that finished
+         * @param error the error that the file failed with, or null if it was converted successfully
+         * @param completed the number of files that have finished so far, including this one
+         * @param total the total number of files in the batch
+         */
+        void fileFinished(File src, Exception error, int completed, int total);
+    }
+
+    private final int workers;
+    private final long memoryBudget;
+
+    private volatile boolean cancelled;
+    private volatile boolean running;
+
+    /**
+     * Creates a new converter with one worker per available processor, and a memory budget of three quarters of the
+     * maximum heap size.
+     */
+    public B2PBatchConverter() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 4 * 3);
+    }
+
+    /**
+     * Creates a new converter.
+     * @param workers the maximum number of files to convert at once
+     * @param memoryBudget the total estimated heap cost, in bytes, of the files being converted at any one time
+     */
+    public B2PBatchConverter(int workers, long memoryBudget)
+    {
+        if(workers < 1 || memoryBudget < BUDGET_UNIT) throw new IllegalArgumentException("Worker count or memory budget is invalid");
+
+        this.workers = workers;
+        this.memoryBudget = Math.min(memoryBudget, (long)Integer.MAX_VALUE * BUDGET_UNIT);
+        this.cancelled = false;
+        this.running = false;
+    }
+
+    /**
+     * Converts a batch of files into a destination directory, and waits for the batch to finish.
+     * Output files are named after their source files, with the extension appended. If several sources share a name,
+     * they are converted in order, exactly as they would be if the batch were run one file at a time.
+     * If the batch is cancelled, either through {@link #cancel()} or by interrupting the calling thread, files that have
+     * not been started yet are skipped, and this method returns as soon as the files already in progress have finished.
+     * @param sources the files to convert
+     * @param destDir the directory to write converted files to
+     * @param extension the extension to append to each source file's name, including the leading dot
+     * @param overwrite if this is set to {@code true}, existing destination files are replaced; otherwise, files whose
+     *                  destination already exists fail with an error
+     * @param method the schema to convert every file with
+     * @param listener the listener to report per-file progress to. May be null.
+     * @return the errors encountered while converting, in the order that they occurred. Empty if every file succeeded.
+     */
+    public ArrayList<Exception> convert(List<File> sources, File destDir, String extension, boolean overwrite, EncodingSchema method, ProgressListener listener)
+    {
+        if(running) throw new IllegalStateException("A batch is already running");
+
+        int total = sources.size();
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger completed = new AtomicInteger(0);
+        int budgetUnits = (int)(memoryBudget / BUDGET_UNIT);
+        Semaphore budget = new Semaphore(budgetUnits, true);
+
+        // Group sources by destination, so that sources sharing a destination are run by a single task.
+        LinkedHashMap<File, List<File>> targets = new LinkedHashMap<>();
+        for(File src : sources) targets.computeIfAbsent(new File(destDir, src.getName() + extension).getAbsoluteFile(), k -> new ArrayList<>()).add(src);
+
+        cancelled = false;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, targets.size())));
+        running = true;
+
+        targets.forEach((dest, group) -> pool.execute(() -> {
+            for(File src : group)
+            {
+                if(cancelled) return;
+
+                // Files that cannot be estimated (for example, because they do not exist) fail during conversion anyway,
+                // so they are admitted at the minimum cost.
+                long cost;
+                try {
+                    cost = B2PCore.estimateMemoryCost(src, method);
+                } catch (RuntimeException e) {
+                    cost = 0;
+                }
+                int units = (int)Math.max(1, Math.min(budgetUnits, (cost + BUDGET_UNIT - 1) / BUDGET_UNIT));
+
+                // Workers are never interrupted (an interrupt would break memory-mapping of the source file), so
+                // skipped files still pass through here, and are dropped as soon as they are admitted.
+                budget.acquireUninterruptibly(units);
+
+                Exception error = null;
+                try {
+                    if(cancelled) return;
+                    convertFile(src, dest, overwrite, method);
+                } catch (IOException | ConversionException | RuntimeException e) {
+                    error = e;
+                    errors.add(e);
+                } finally {
+                    budget.release(units);
+                }
+
+                if(listener != null) listener.fileFinished(src, error, completed.incrementAndGet(), total);
+            }
+        }));
+
+        pool.shutdown();
+        try {
+            while(!pool.awaitTermination(1, TimeUnit.SECONDS)) { /* Wait for the batch to finish. */ }
+        } catch (InterruptedException e) {
+            cancel();
+            // Files already in progress cannot be stopped part-way, so let them finish before returning.
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException ignored) {
+                // Interrupted twice; give up waiting.
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Cancels the running batch, if there is one. Files that have not been started yet are skipped; files that are
+     * already being converted are allowed to finish.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the last batch was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the maximum number of files converted at once
+     */
+    public int getWorkerCount() {
+        return workers;
+    }
+
+    /**
+     * @return the memory budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    private static void convertFile(File src, File dest, boolean overwrite, EncodingSchema method) throws IOException, ConversionException
+    {
+        if(dest.exists() && overwrite){
+            if(!dest.delete()) throw new IOException("Could not delete existing file " + dest.getName());
+        }else if(dest.exists()){
+            throw new IOException("Destination file " + dest.getName() + " already exists");
+        }
+
+        B2PCore.B2PFile2File(src, dest, method);
+    }
+}
@@ -1,81 +1,122 @@
 package Bin2Pix.Core;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.awt.image.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Actually converts shit from binary to image data.
  */
 public class B2PCore
 {
-    // 300 MB in bytes
+    private static final ColorModel BGR_COLOR_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR).getColorModel();
+
+    // Pixel sampling is split into bands of whole rows of roughly this many pixels each, which are sampled in parallel.
+    // Images smaller than a single band are always sampled on the calling thread.
+    private static final int BAND_PIXELS = 65536;
+
+    // Rough heap cost of a single conversion on top of its pixel data (encoder state, stream buffers, and so on).
+    private static final long BASE_CONVERSION_COST = 4 * 1048576L;
+
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool samplingPool = null;
+
+    /**
+     * Receives a range of image rows to sample.
+     */
+    interface RowSampler
+    {
+        /**
+         * @param fromRow the first row to sample, inclusive
+         * @param toRow the last row to sample, exclusive
+         */
+        void sample(int fromRow, int toRow);
+    }
+
+    // 300 MB in bytes. Only applies to in-memory conversions through B2P(byte[], EncodingSchema); file conversions
+    // are streamed, and are only limited by MAX_IMAGE_BYTES.
     public static final long MAX_DATA_LENGTH = 314572800L;
 
+    // The largest output image, in bytes of pixel data (3 per pixel). Image rasters are backed by a single array, so
+    // images cannot be any larger than this, however they are encoded.
+    public static final long MAX_IMAGE_BYTES = Integer.MAX_VALUE - 8;
+
     public static byte[] B2PFromFile(File src, EncodingSchema method) throws IOException, ConversionException
     {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        B2PStream(src, bs, method);
+        return bs.toByteArray();
+    }
+
+    /**
+     * Converts a file to an image, and writes the encoded image to a stream. The file is memory-mapped rather than read
+     * into the heap, and pixel rows are sampled from it as the schema's adapter encodes them, so the size of the file is
+     * not limited by the size of the heap. With the PNG and BMP adapters, heap usage is limited to a row or so of the
+     * output image; formats whose encoders need the entire image at once (such as JPEG) still hold the full output image
+     * in memory, but never the source data.
+     * The output image itself cannot hold more than {@link #MAX_IMAGE_BYTES} bytes of pixel data (about 715 million
+     * pixels). With the default schema of one byte per channel and no mark-space gap, this limits source files to about
+     * 2 GB; longer sample lengths and mark-space gaps raise the limit in proportion.
+     * @param src the file to convert
+     * @param dest the stream to write the encoded image to. Not closed, and should be buffered.
+     * @param method the schema to convert the file with
+     * @throws IOException if the source file is invalid or could not be read
+     * @throws ConversionException if the file is too small or too large to convert with the provided schema, or if
+     * encoding fails
+     */
+    public static void B2PStream(File src, OutputStream dest, EncodingSchema method) throws IOException, ConversionException
+    {
+        checkSchema(method);
         if(src == null || !src.exists() || !src.canRead()){
             throw new IOException("Target file is invalid or nonexistent");
-        }else if(src.length() >= (long)Integer.MAX_VALUE){
-            throw new IllegalArgumentException("Target file is too large (> 2.14 GB)");
+        }else if(method.length * 3L > MappedSource.MAX_OVERLAP){
+            throw new IllegalArgumentException("Provided schema is invalid");
+        }
+
+        int perPixelBytes = (method.length * 3) + method.MSR;
+
+        MappedSource source;
+        try(FileChannel channel = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+            source = new MappedSource(channel, method.length * 3);
         }
 
-        FileInputStream is = new FileInputStream(src);
-        byte[] buffer = new byte[(int)src.length()];
-        is.read(buffer);
-        is.close();
+        int[] res = getResolution(source.length() <= method.length ? 0 : source.length() / perPixelBytes, method);
+        if(res[0] <= 0 || res[1] <= 0) throw new ConversionException("Target file is too small to convert with the provided schema");
+        if((long)res[0] * res[1] * 3 > MAX_IMAGE_BYTES){
+            throw new ConversionException("Target file is too large to convert with the provided schema (output would be " + res[0] + "x" + res[1]
+                    + " pixels, limit is " + (MAX_IMAGE_BYTES / 3) + " pixels). Use a longer sample length or mark-space ratio.");
+        }
 
-        return B2P(buffer, method);
+        method.adapter.write(new PixelRowImage(source, perPixelBytes, method.length, res[0], res[1]), dest);
     }
 
     public static byte[] B2P(byte[] data, EncodingSchema method) throws ConversionException
     {
-        if(method == null || method.adapter == null || method.length <= 0 || (double)method.hRatio / (double)method.vRatio <= 0.0){
-            throw new IllegalArgumentException("Provided schema is invalid");
-        }else if(data == null || data.length <= method.length){
+        checkSchema(method);
+        if(data == null || data.length <= method.length){
             throw new IllegalArgumentException("Provided data array is invalid");
         }else if(data.length > MAX_DATA_LENGTH){
             throw new IllegalArgumentException("Input data is larger than allowed length (300 MB)");
         }
-        
-        int perPixelBytes = (method.length * 3) + method.MSR;
-        
-        Pixel[] pixels = new Pixel[data.length / perPixelBytes];
-
-        if(data.length % perPixelBytes != 0){
-            byte[] temp = new byte[data.length];
-            System.arraycopy(data, 0, temp, 0, data.length);
-            data = new byte[temp.length - (temp.length % perPixelBytes)];
-            System.arraycopy(temp, 0, data, 0, data.length);
-        }
 
-        int i = 0;
-        for(int j = 0; j < data.length; j += perPixelBytes)
-        {
-            int r = 0;
-            for(int k = j; k < j + method.length; k++){
-                r += (data[k] + 128);
-            }
-            r = (r / method.length) - 128;
+        int perPixelBytes = (method.length * 3) + method.MSR;
 
-            int g = 0;
-            for(int k = j + method.length; k < j + method.length * 2; k++){
-                g += (data[k] + 128);
-            }
-            g = (g / method.length) - 128;
+        int[] res = getResolution(data.length / perPixelBytes, method);
+        if(res[0] <= 0 || res[1] <= 0) throw new ConversionException("Input data is too small to convert with the provided schema");
 
-            int b = 0;
-            for(int k = j + (method.length * 2); k < j + method.length * 3; k++){
-                b += (data[k] + 128);
-            }
-            b = (b / method.length) - 128;
-            
-            pixels[i] = new Pixel((byte)r, (byte)g, (byte)b, (byte)0xFF);
-            i++;
-        }
+        // Only the pixels that fit into the image are sampled, straight into a packed buffer.
+        int width = res[0];
+        byte[] pixels = new byte[width * res[1] * 3];
+        ByteBuffer src = ByteBuffer.wrap(data);
+        sampleRows(width, res[1], (from, to) -> {
+            for(int i = from * width; i < to * width; i++) samplePixel(src, i * perPixelBytes, method.length, pixels, i * 3);
+        });
 
-        return method.adapter.convert(pixels, method);
+        return method.adapter.convert(pixels, res[0], res[1]);
     }
 
     public static void B2PFile2File(File src, File dest, EncodingSchema method) throws IOException, ConversionException
@@ -84,18 +125,187 @@ public class B2PCore
             throw new IllegalArgumentException("Destination file is null or invalid");
         }
 
-        byte[] data = B2PFromFile(src, method);
-
         if(!dest.getParentFile().exists()){
             dest.getParentFile().mkdirs();
         }
         dest.createNewFile();
 
-        FileOutputStream fos = new FileOutputStream(dest);
+        // The image is written as it is encoded, so don't leave a partial file behind if encoding fails.
+        boolean success = false;
+        try(OutputStream os = new BufferedOutputStream(new FileOutputStream(dest))) {
+            B2PStream(src, os, method);
+            success = true;
+        } finally {
+            if(!success) dest.delete();
+        }
+    }
+
+    /**
+     * Estimates the peak heap usage of converting a file with {@link #B2PFile2File(File, File, EncodingSchema)} or
+     * {@link #B2PStream(File, OutputStream, EncodingSchema)}. The source file itself is memory-mapped, so its size only
+     * matters insofar as it determines the size of the output image. Adapters that encode row by row only hold a band of
+     * rows at a time; others need the entire image, and are assumed to make one copy of it while encoding.
+     * @param src the file that would be converted
+     * @param method the schema that it would be converted with
+     * @return the estimated peak heap usage in bytes
+     */
+    public static long estimateMemoryCost(File src, EncodingSchema method)
+    {
+        checkSchema(method);
+
+        long pixelCount = src.length() <= method.length ? 0 : src.length() / ((method.length * 3) + method.MSR);
+        int[] res = getResolution(pixelCount, method);
+        if(res[0] <= 0 || res[1] <= 0) return BASE_CONVERSION_COST;
 
-        fos.write(data);
-        fos.flush();
-        fos.close();
+        long imageBytes = (long)res[0] * res[1] * 3;
+        long pixelCost = method.adapter.encodesByRow() ? Math.min(imageBytes, PixelRowImage.bandBytes(res[0])) : imageBytes * 2;
+        return BASE_CONVERSION_COST + pixelCost;
+    }
+
+    /**
+     * Sets the number of threads used to sample pixels during conversion. Each image is split into bands of rows, which
+     * are sampled independently, so output is identical at any parallelism level. Defaults to the number of available
+     * processors.
+     * @param level the number of threads to use. 1 samples all pixels on the calling thread.
+     */
+    public static synchronized void setParallelism(int level)
+    {
+        if(level < 1) throw new IllegalArgumentException("Parallelism level must be at least 1");
+        if(level == parallelism) return;
+
+        parallelism = level;
+        if(samplingPool != null){
+            samplingPool.shutdown();
+            samplingPool = null;
+        }
+    }
+
+    /**
+     * @return the number of threads used to sample pixels during conversion
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
     }
-}
 
+    private static synchronized ForkJoinPool getSamplingPool()
+    {
+        if(parallelism <= 1) return null;
+        if(samplingPool == null) samplingPool = new ForkJoinPool(parallelism);
+        return samplingPool;
+    }
+
+    /**
+     * Samples a range of image rows, split into bands that are run in parallel at the current parallelism level.
+     * Returns once every row has been sampled.
+     * @param width the width of each row in pixels, used to size bands
+     * @param height the number of rows to sample, starting from row 0
+     * @param sampler the sampler to run for each band. Must be safe to run on multiple bands at once.
+     */
+    static void sampleRows(int width, int height, RowSampler sampler)
+    {
+        int bandRows = Math.max(1, BAND_PIXELS / Math.max(1, width));
+        ForkJoinPool pool = height > bandRows ? getSamplingPool() : null;
+
+        if(pool == null) sampler.sample(0, height);
+        else pool.invoke(new BandTask(sampler, 0, height, bandRows));
+    }
+
+    // Recursively halves a row range until it is no more than one band tall, then samples it.
+    private static class BandTask extends RecursiveAction
+    {
+        private final RowSampler sampler;
+        private final int from;
+        private final int to;
+        private final int bandRows;
+
+        BandTask(RowSampler sampler, int from, int to, int bandRows)
+        {
+            this.sampler = sampler;
+            this.from = from;
+            this.to = to;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= bandRows){
+                sampler.sample(from, to);
+                return;
+            }
+
+            int mid = from + (to - from) / 2;
+            invokeAll(new BandTask(sampler, from, mid, bandRows), new BandTask(sampler, mid, to, bandRows));
+        }
+    }
+
+    /**
+     * Creates an image backed directly by a packed pixel buffer, without copying it. Changes to the buffer are reflected
+     * in the image, and vice versa.
+     * @param data the pixel data, laid out as described in {@link ImageAdapter#convert(byte[], int, int)}
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return a {@link BufferedImage#TYPE_3BYTE_BGR} image backed by the buffer
+     */
+    public static BufferedImage createImage(byte[] data, int width, int height)
+    {
+        if(data == null || width <= 0 || height <= 0 || data.length < (long)width * height * 3){
+            throw new IllegalArgumentException("Pixel data is invalid or does not match the image size");
+        }
+
+        WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(data, data.length), width, height,
+                width * 3, 3, PixelRowImage.BGR_OFFSETS, null);
+        return new BufferedImage(BGR_COLOR_MODEL, raster, false, null);
+    }
+
+    /**
+     * Calculates the resolution of the image produced from a number of pixels, given the aspect ratio of a schema.
+     * Any pixels that do not fit into the resulting image are discarded.
+     * @param pixelCount the number of pixels available
+     * @param method the schema to get the aspect ratio from
+     * @return the width and height of the image, in that order
+     */
+    public static int[] getResolution(long pixelCount, EncodingSchema method)
+    {
+        int resX = (int)Math.sqrt(pixelCount * ((double)method.hRatio / (double)method.vRatio));
+        int resY = (int)Math.sqrt(pixelCount * ((double)method.vRatio / (double)method.hRatio));
+
+        // Guard against rounding error pushing the image past the number of available pixels.
+        while(resY > 0 && (long)resX * resY > pixelCount) resY --;
+
+        return new int[]{resX, resY};
+    }
+
+    /**
+     * Averages the sample bytes for a single pixel into its channel values, and stores them in BGR order.
+     * Each channel is the average of {@code length} consecutive source bytes (red first, then green, then blue), with
+     * each source byte offset by +128.
+     * @param src the buffer to read the samples from
+     * @param offset the position in the buffer of the first sample byte for the pixel
+     * @param length the number of sample bytes per channel
+     * @param dest the array to store the channel values in
+     * @param destOffset the position in the array to store the blue channel at. Green and red follow it.
+     */
+    static void samplePixel(ByteBuffer src, int offset, int length, byte[] dest, int destOffset)
+    {
+        int r = 0;
+        for(int k = offset; k < offset + length; k++) r += (src.get(k) + 128);
+
+        int g = 0;
+        for(int k = offset + length; k < offset + length * 2; k++) g += (src.get(k) + 128);
+
+        int b = 0;
+        for(int k = offset + length * 2; k < offset + length * 3; k++) b += (src.get(k) + 128);
+
+        dest[destOffset] = (byte)(b / length);
+        dest[destOffset + 1] = (byte)(g / length);
+        dest[destOffset + 2] = (byte)(r / length);
+    }
+
+    private static void checkSchema(EncodingSchema method)
+    {
+        if(method == null || method.adapter == null || method.length <= 0 || (method.length * 3) + method.MSR <= 0 || (double)method.hRatio / (double)method.vRatio <= 0.0){
+            throw new IllegalArgumentException("Provided schema is invalid");
+        }
+    }
+}
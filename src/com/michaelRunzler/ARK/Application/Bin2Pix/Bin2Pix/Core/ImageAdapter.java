@@ -1,9 +1,44 @@
 package Bin2Pix.Core;
 
+import java.awt.image.RenderedImage;
+import java.io.OutputStream;
+
 /**
  * Classes that implement this interface must be able to output a valid bytestream for their specified format.
  */
 public interface ImageAdapter{
     byte[] convert(Pixel[] data, EncodingSchema method) throws ConversionException;
+
+    /**
+     * Encodes an image from a packed pixel buffer. This is the form that {@link B2PCore} produces pixel data in, and
+     * avoids allocating an object per pixel.
+     * @param data the pixel data, with 3 bytes per pixel in blue, green, red order, and rows stored top to bottom with no
+     *             padding. This is the same layout as a {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR} image, so the
+     *             buffer can be used as the backing store of one directly (see {@link B2PCore#createImage(byte[], int, int)}).
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return the encoded image
+     * @throws ConversionException if the image could not be encoded
+     */
+    byte[] convert(byte[] data, int width, int height) throws ConversionException;
+
+    /**
+     * Encodes an image to a stream. Images passed to this method by {@link B2PCore} generate their pixel data on demand,
+     * so implementations should avoid copying the whole image where the format allows it. The stream is not closed.
+     * @param image the image to encode
+     * @param out the stream to write the encoded image to
+     * @throws ConversionException if the image could not be encoded or written
+     */
+    void write(RenderedImage image, OutputStream out) throws ConversionException;
+
+    /**
+     * Used to estimate how much memory a conversion will take. See {@link B2PCore#estimateMemoryCost(java.io.File, EncodingSchema)}.
+     * @return true if {@link #write(RenderedImage, OutputStream)} only requests a few rows of the image at a time,
+     *         false if it needs the entire image at once
+     */
+    default boolean encodesByRow() {
+        return false;
+    }
+
     String[] getHandledExtensions();
 }
@@ -0,0 +1,66 @@
+package Bin2Pix.Core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a file that is memory-mapped in fixed-size windows, so that files larger than 2 GB can be read by
+ * absolute position. Mapped pages live outside the Java heap and are paged in and out by the OS as they are read, so the
+ * size of the file has no bearing on heap usage. Reads are done with absolute gets only, so this is safe to share
+ * between threads.
+ */
+class MappedSource
+{
+    // Windows start every WINDOW_SIZE bytes. Each one also maps a little of the next, so that any read of up to the
+    // overlap length starting inside a window lies entirely within that window.
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    static final int MAX_OVERLAP = Integer.MAX_VALUE - (int)WINDOW_SIZE;
+
+    private final MappedByteBuffer[] windows;
+    private final long length;
+
+    /**
+     * Maps an entire file. The channel may be closed once this returns, since mappings stay valid after their channel closes.
+     * @param channel the channel to map the file from
+     * @param overlap the longest read that will be made from a single position. Must be no more than {@link #MAX_OVERLAP}.
+     * @throws IOException if the file could not be mapped
+     */
+    MappedSource(FileChannel channel, int overlap) throws IOException
+    {
+        if(overlap < 0 || overlap > MAX_OVERLAP) throw new IllegalArgumentException("Overlap is out of range");
+
+        this.length = channel.size();
+        this.windows = new MappedByteBuffer[(int)((length + WINDOW_SIZE - 1) >>> WINDOW_SHIFT)];
+        for(int i = 0; i < windows.length; i++){
+            long start = (long)i << WINDOW_SHIFT;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, WINDOW_SIZE + overlap));
+        }
+    }
+
+    /**
+     * Gets the window containing a position. Read from it at {@link #offset(long)}.
+     * @param pos the absolute position in the file
+     * @return the mapped window that the position falls in
+     */
+    ByteBuffer window(long pos) {
+        return windows[(int)(pos >>> WINDOW_SHIFT)];
+    }
+
+    /**
+     * @param pos the absolute position in the file
+     * @return the offset of the position within its {@link #window(long) window}
+     */
+    static int offset(long pos) {
+        return (int)(pos & (WINDOW_SIZE - 1));
+    }
+
+    /**
+     * @return the length of the mapped file in bytes
+     */
+    long length() {
+        return length;
+    }
+}
@@ -0,0 +1,219 @@
+package Bin2Pix.Core;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.Vector;
+
+/**
+ * An image whose pixels are sampled from a {@link MappedSource} on demand, rather than being stored. Pixel data is only
+ * produced for the area that is asked for, so encoders that request one row at a time (such as the standard PNG and BMP
+ * writers) never need more than a small band of rows of the image in memory. Data is laid out in the same way as a
+ * {@link BufferedImage#TYPE_3BYTE_BGR} image.
+ * Requests for single rows are served from a band of neighbouring rows, which is sampled in parallel through
+ * {@link B2PCore#sampleRows(int, int, B2PCore.RowSampler)}, since sampling one row at a time leaves too little work to split up.
+ */
+class PixelRowImage implements RenderedImage
+{
+    static final int[] BGR_OFFSETS = {2, 1, 0};
+    private static final ColorModel COLOR_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR).getColorModel();
+
+    // Row bands are no taller than this, and no larger than BAND_BYTES.
+    private static final int MAX_BAND_ROWS = 64;
+    private static final int BAND_BYTES = 8 * 1048576;
+
+    private final MappedSource source;
+    private final int perPixelBytes;
+    private final int length;
+    private final int width;
+    private final int height;
+    private final SampleModel sampleModel;
+
+    private final int bandRows;
+    private byte[] band;
+    private int bandStart;
+
+    /**
+     * Creates a new image over a source.
+     * @param source the source to sample pixels from. Pixels are read in order, starting from the beginning of the source.
+     * @param perPixelBytes the number of source bytes used by each pixel, including any mark-space gap
+     * @param length the number of source bytes averaged into each of a pixel's channels
+     * @param width the width of the image
+     * @param height the height of the image. The image must not hold more than {@link B2PCore#MAX_IMAGE_BYTES} bytes of
+     *               pixel data, since neither its sample model nor a raster covering all of it could be created.
+     */
+    PixelRowImage(MappedSource source, int perPixelBytes, int length, int width, int height)
+    {
+        this.source = source;
+        this.perPixelBytes = perPixelBytes;
+        this.length = length;
+        this.width = width;
+        this.height = height;
+        this.sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height, 3, width * 3, BGR_OFFSETS);
+        this.bandRows = bandRows(width);
+        this.band = null;
+        this.bandStart = -1;
+    }
+
+    private static int bandRows(int width) {
+        return Math.max(1, Math.min(MAX_BAND_ROWS, BAND_BYTES / (width * 3)));
+    }
+
+    /**
+     * Gets the amount of pixel data held by an image of a given width while it is being encoded row by row: one band,
+     * plus the row being handed to the encoder.
+     * @param width the width of the image
+     * @return the size of a band and a row, in bytes
+     */
+    static long bandBytes(int width) {
+        return (bandRows(width) + 1L) * width * 3;
+    }
+
+    @Override
+    public Raster getData(Rectangle rect)
+    {
+        Rectangle r = rect.intersection(new Rectangle(0, 0, width, height));
+        if(r.isEmpty()) throw new IllegalArgumentException("Requested area is outside of the image");
+
+        WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, r.width, r.height, r.width * 3, 3, BGR_OFFSETS, new Point(r.x, r.y));
+        byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+
+        if(r.height == 1 && bandRows > 1) copyFromBand(r, data);
+        else B2PCore.sampleRows(r.width, r.height, (from, to) -> sample(r.x, r.y, r.width, from, to, data));
+
+        return raster;
+    }
+
+    // Copies a single row from the current band, sampling a new band around it first if necessary. Bands are aligned to
+    // multiples of the band height, so that encoders that work upwards (such as the BMP writer) are served as well as
+    // those that work downwards.
+    private synchronized void copyFromBand(Rectangle r, byte[] dest)
+    {
+        if(band == null || r.y < bandStart || r.y >= bandStart + bandRows){
+            if(band == null) band = new byte[bandRows * width * 3];
+            int start = (r.y / bandRows) * bandRows;
+            byte[] target = band;
+            B2PCore.sampleRows(width, Math.min(bandRows, height - start), (from, to) -> sample(0, start, width, from, to, target));
+            bandStart = start;
+        }
+
+        System.arraycopy(band, ((r.y - bandStart) * width + r.x) * 3, dest, 0, r.width * 3);
+    }
+
+    // Samples rows [from, to) of an area starting at (x0, y0) and w pixels wide into a packed buffer for that area.
+    private void sample(int x0, int y0, int w, int from, int to, byte[] dest)
+    {
+        int d = from * w * 3;
+        for(int y = y0 + from; y < y0 + to; y++){
+            long pos = ((long)y * width + x0) * perPixelBytes;
+            for(int x = 0; x < w; x++, pos += perPixelBytes, d += 3)
+                B2PCore.samplePixel(source.window(pos), MappedSource.offset(pos), length, dest, d);
+        }
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster)
+    {
+        if(raster == null) return (WritableRaster)getData();
+        raster.setRect(getData(raster.getBounds()));
+        return raster;
+    }
+
+    // The whole image is a single tile.
+
+    @Override
+    public Raster getTile(int tileX, int tileY)
+    {
+        if(tileX != 0 || tileY != 0) throw new IllegalArgumentException("Tile index is out of range");
+        return getData();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return height;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return COLOR_MODEL;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+}
@@ -143,9 +143,12 @@ public class ItemRegistry
         obj.getArrayMap().add(materials);
         obj.getArrayMap().add(components);
 
-        br.write(obj.getJSONText());
-        br.flush();
-        br.close();
+        // Written element by element, so that the document is never held in memory as a single String.
+        try {
+            obj.writeJSONText(br, false);
+        } finally {
+            br.close();
+        }
     }
 
     private ARKJsonElement assembleItemJSON(Item i, Category category)
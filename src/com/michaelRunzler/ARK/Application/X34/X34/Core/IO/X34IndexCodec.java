@@ -0,0 +1,367 @@
+package X34.Core.IO;
+
+import X34.Core.X34Image;
+import X34.Core.X34Index;
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Encodes and decodes {@link X34Index indexes} to and from the compact binary index file format used by {@link X34IndexIO}.
+ * The format is laid out as follows, with all values in big-endian order:
+ * <ul>
+ * <li>Header: the {@code int} magic number {@link #MAGIC}, followed by the {@code short} format version and the
+ *     {@code long} generation stamp. The stamp is a random number picked each time the file is written, which
+ *     {@link X34IndexJournal journals} record so that they are only ever applied to the base file that they were
+ *     written against. Version 1 files have no stamp, and are treated as having a stamp of {@code 0}.</li>
+ * <li>The index ID, followed by an {@code int} metadata entry count and that many key-value pairs</li>
+ * <li>String table: an {@code int} string count, followed by that many strings. Used for the tag and processor ID of
+ *     every entry, since these are almost always shared between most or all entries in an index.</li>
+ * <li>Entry records: an {@code int} entry count and {@code int} hash width, followed by that many fixed-width records,
+ *     each consisting of the entry's hash, and the string table references for its tag and processor ID</li>
+ * <li>Source URLs: one string per entry, in the same order as the entry records</li>
+ * <li>Irregular hashes: an {@code int} count, followed by that many records consisting of an entry number and the full
+ *     hash for that entry. Used for entries whose hashes are not exactly {@link #HASH_WIDTH} bytes long. The fixed-width
+ *     record for these entries is zero-filled.</li>
+ * </ul>
+ * All strings are written in modified UTF-8 as per {@link DataOutput#writeUTF(String)}.
+ */
+class X34IndexCodec
+{
+    /**
+     * The magic number at the start of every binary index file (ASCII {@code X34I}).
+     */
+    static final int MAGIC = 0x58333449;
+
+    /**
+     * The current binary index format version.
+     */
+    static final short VERSION = 2;
+
+    /**
+     * The width of the hash field in each entry record, in bytes.
+     */
+    static final int HASH_WIDTH = 16;
+
+    // The first two bytes of any Java serialization stream, used to detect legacy index files.
+    private static final int LEGACY_STREAM_MAGIC = 0xACED;
+
+    // String table reference used for null strings.
+    private static final int NULL_REF = -1;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Writes the specified index to the provided stream in binary format. The stream is not closed once writing is complete.
+     * @param index the index to write
+     * @param target the stream to write to. Buffering is handled internally.
+     * @return the generation stamp written to the file's header. Never {@code 0}.
+     * @throws IOException if the index cannot be written to the provided stream
+     */
+    static long write(@NotNull X34Index index, @NotNull OutputStream target) throws IOException
+    {
+        DataOutputStream os = new DataOutputStream(new BufferedOutputStream(target, BUFFER_SIZE));
+        ArrayList<X34Image> entries = index.entries == null ? new ArrayList<>() : index.entries;
+
+        long generation;
+        do{
+            generation = ThreadLocalRandom.current().nextLong();
+        }while(generation == 0);
+
+        os.writeInt(MAGIC);
+        os.writeShort(VERSION);
+        os.writeLong(generation);
+        os.writeUTF(index.id == null ? "" : index.id);
+
+        // Metadata values may be null, so each one is preceded by a flag indicating its presence.
+        os.writeInt(index.metadata == null ? 0 : index.metadata.size());
+        if(index.metadata != null) {
+            for (Map.Entry<String, String> e : index.metadata.entrySet()) {
+                os.writeUTF(e.getKey());
+                os.writeBoolean(e.getValue() != null);
+                if (e.getValue() != null) os.writeUTF(e.getValue());
+            }
+        }
+
+        // Build the string table from the tags and processor IDs of every entry.
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringRefs = new HashMap<>();
+        int[] tagRefs = new int[entries.size()];
+        int[] procRefs = new int[entries.size()];
+        for(int i = 0; i < entries.size(); i++){
+            X34Image x = entries.get(i);
+            tagRefs[i] = getStringRef(x.tag, strings, stringRefs);
+            procRefs[i] = getStringRef(x.processorID, strings, stringRefs);
+        }
+
+        os.writeInt(strings.size());
+        for(String s : strings) os.writeUTF(s);
+
+        // Write fixed-width entry records, noting which entries have hashes that do not fit the record width.
+        ArrayList<Integer> irregular = new ArrayList<>();
+        byte[] empty = new byte[HASH_WIDTH];
+        os.writeInt(entries.size());
+        os.writeInt(HASH_WIDTH);
+        for(int i = 0; i < entries.size(); i++){
+            byte[] hash = entries.get(i).hash;
+            if(hash != null && hash.length == HASH_WIDTH) os.write(hash);
+            else{
+                os.write(empty);
+                if(hash != null) irregular.add(i);
+            }
+            os.writeInt(tagRefs[i]);
+            os.writeInt(procRefs[i]);
+        }
+
+        for(X34Image x : entries) os.writeUTF(x.source.toString());
+
+        os.writeInt(irregular.size());
+        for(int i : irregular){
+            byte[] hash = entries.get(i).hash;
+            os.writeInt(i);
+            os.writeShort(hash.length);
+            os.write(hash);
+        }
+
+        os.flush();
+        return generation;
+    }
+
+    /**
+     * Reads an index in binary format from the provided stream. The stream is read sequentially, and is not closed
+     * once reading is complete.
+     * @param source the stream to read from. Buffering is handled internally.
+     * @return the decoded index
+     * @throws IOException if the stream does not contain a valid binary index, or if it cannot be read
+     */
+    static X34Index read(@NotNull InputStream source) throws IOException
+    {
+        DataInputStream is = new DataInputStream(new BufferedInputStream(source, BUFFER_SIZE));
+
+        if(is.readInt() != MAGIC) throw new IOException("Index file is not in binary index format");
+        short version = is.readShort();
+        if(version > VERSION || version < 1) throw new IOException("Unsupported index format version: " + version);
+        if(version >= 2) is.readLong();
+
+        X34Index index = new X34Index(is.readUTF());
+
+        int metaCount = is.readInt();
+        for(int i = 0; i < metaCount; i++){
+            String key = is.readUTF();
+            index.metadata.put(key, is.readBoolean() ? is.readUTF() : null);
+        }
+
+        String[] strings = new String[is.readInt()];
+        for(int i = 0; i < strings.length; i++) strings[i] = is.readUTF();
+
+        int count = is.readInt();
+        int width = is.readInt();
+        if(count < 0 || width < 0) throw new IOException("Index file is corrupt");
+
+        byte[][] hashes = new byte[count][];
+        int[] tagRefs = new int[count];
+        int[] procRefs = new int[count];
+        for(int i = 0; i < count; i++){
+            hashes[i] = new byte[width];
+            is.readFully(hashes[i]);
+            tagRefs[i] = is.readInt();
+            procRefs[i] = is.readInt();
+        }
+
+        ArrayList<X34Image> entries = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            entries.add(new X34Image(new URL(is.readUTF()), getString(strings, tagRefs[i]), hashes[i], getString(strings, procRefs[i])));
+        }
+
+        int irregularCount = is.readInt();
+        for(int i = 0; i < irregularCount; i++){
+            int entry = is.readInt();
+            byte[] hash = new byte[is.readUnsignedShort()];
+            is.readFully(hash);
+            if(entry < 0 || entry >= count) throw new IOException("Index file is corrupt");
+            entries.get(entry).hash = hash;
+        }
+
+        // Fill the index's own entry list instead of replacing it, so that the index can keep track of later changes to it.
+        index.entries.addAll(entries);
+        return index;
+    }
+
+    /**
+     * Reads only the entry hashes of an index in binary format from the provided stream, without building any
+     * {@link X34Image} objects. Every other section of the index is skipped.
+     * @param source the stream to read from. Buffering is handled internally.
+     * @return the hashes contained in the index
+     * @throws IOException if the stream does not contain a valid binary index, or if it cannot be read
+     */
+    static HashSection readHashes(@NotNull InputStream source) throws IOException
+    {
+        DataInputStream is = new DataInputStream(new BufferedInputStream(source, BUFFER_SIZE));
+
+        if(is.readInt() != MAGIC) throw new IOException("Index file is not in binary index format");
+        short version = is.readShort();
+        if(version > VERSION || version < 1) throw new IOException("Unsupported index format version: " + version);
+        long generation = version >= 2 ? is.readLong() : 0;
+
+        skipUTF(is);
+
+        int metaCount = is.readInt();
+        for(int i = 0; i < metaCount; i++){
+            skipUTF(is);
+            if(is.readBoolean()) skipUTF(is);
+        }
+
+        int stringCount = is.readInt();
+        for(int i = 0; i < stringCount; i++) skipUTF(is);
+
+        int count = is.readInt();
+        int width = is.readInt();
+        if(count < 0 || width != HASH_WIDTH) throw new IOException("Index file is corrupt");
+
+        HashSection section = new HashSection();
+        section.generation = generation;
+        section.count = count;
+        section.hashes = new byte[count * width];
+        for(int i = 0; i < count; i++){
+            is.readFully(section.hashes, i * width, width);
+            skipFully(is, 8);
+        }
+
+        for(int i = 0; i < count; i++) skipUTF(is);
+
+        int irregularCount = is.readInt();
+        section.irregular = new ArrayList<>(irregularCount);
+        section.irregularEntries = new int[irregularCount];
+        for(int i = 0; i < irregularCount; i++){
+            section.irregularEntries[i] = is.readInt();
+            byte[] hash = new byte[is.readUnsignedShort()];
+            is.readFully(hash);
+            section.irregular.add(hash);
+        }
+
+        return section;
+    }
+
+    /**
+     * Reads the generation stamp from the header of a binary index, without consuming any of the provided stream.
+     * @param source the stream to read from, positioned at the start of the index
+     * @return the generation stamp of the index, or {@code 0} if it was written before stamps were introduced
+     * @throws IOException if the stream does not start with a valid binary index header, or if it cannot be read
+     */
+    static long readGeneration(@NotNull BufferedInputStream source) throws IOException
+    {
+        source.mark(14);
+        try{
+            DataInputStream is = new DataInputStream(source);
+            if(is.readInt() != MAGIC) throw new IOException("Index file is not in binary index format");
+            short version = is.readShort();
+            if(version > VERSION || version < 1) throw new IOException("Unsupported index format version: " + version);
+            return version >= 2 ? is.readLong() : 0;
+        }finally{
+            source.reset();
+        }
+    }
+
+    /**
+     * Reads an index in the legacy Java-serialized format from the provided stream.
+     * Legacy files containing no entries (a single marker byte following the stream header) are returned as an empty
+     * index with the specified ID.
+     * @param source the stream to read from
+     * @param id the ID to use if the file does not contain a valid index
+     * @return the decoded index
+     * @throws IOException if the stream cannot be read
+     */
+    static X34Index readLegacy(@NotNull InputStream source, String id) throws IOException
+    {
+        ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(source, BUFFER_SIZE));
+        try{
+            return (X34Index)is.readObject();
+        }catch (ClassNotFoundException | ClassCastException | OptionalDataException e){
+            return new X34Index(id);
+        }
+    }
+
+    /**
+     * Checks whether the provided file header belongs to a legacy Java-serialized index file.
+     * @param header the first two or more bytes of the index file
+     * @return {@code true} if the file is in legacy format, {@code false} otherwise
+     */
+    static boolean isLegacyHeader(byte[] header) {
+        return header.length >= 2 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) == LEGACY_STREAM_MAGIC;
+    }
+
+    private static void skipUTF(DataInputStream is) throws IOException {
+        skipFully(is, is.readUnsignedShort());
+    }
+
+    // DataInputStream.skipBytes may skip fewer bytes than requested even if more are available, so keep going until done.
+    private static void skipFully(DataInputStream is, int n) throws IOException
+    {
+        while(n > 0){
+            int skipped = is.skipBytes(n);
+            if(skipped <= 0){
+                is.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private static int getStringRef(String s, ArrayList<String> strings, HashMap<String, Integer> refs)
+    {
+        if(s == null) return NULL_REF;
+
+        Integer ref = refs.get(s);
+        if(ref == null){
+            ref = strings.size();
+            strings.add(s);
+            refs.put(s, ref);
+        }
+
+        return ref;
+    }
+
+    private static String getString(String[] strings, int ref) throws IOException
+    {
+        if(ref == NULL_REF) return null;
+        if(ref < 0 || ref >= strings.length) throw new IOException("Index file is corrupt");
+        return strings[ref];
+    }
+
+    /**
+     * The hash section of a binary index, as read by {@link #readHashes(InputStream)}.
+     */
+    static class HashSection
+    {
+        /**
+         * The generation stamp of the index, or {@code 0} if it has none.
+         */
+        long generation;
+
+        /**
+         * The number of entries in the index.
+         */
+        int count;
+
+        /**
+         * The fixed-width hash of every entry, concatenated in entry order. Entries listed in {@link #irregularEntries}
+         * have zero-filled hashes in this array.
+         */
+        byte[] hashes;
+
+        /**
+         * The entry numbers of any entries whose hashes are not {@link #HASH_WIDTH} bytes long.
+         */
+        int[] irregularEntries;
+
+        /**
+         * The full hashes of the entries listed in {@link #irregularEntries}, in the same order.
+         */
+        ArrayList<byte[]> irregular;
+    }
+}
@@ -1,25 +1,45 @@
 package X34.Core.IO;
 
+import X34.Core.X34Image;
 import X34.Core.X34Index;
 import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 import core.system.ARKAppCompat;
 
 import java.io.*;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.WeakHashMap;
 
 /**
  * Loads and saves {@link X34Index indexes}.
+ * Indexes are saved in the binary format described in {@link X34IndexCodec}. Index files saved in the legacy serialized
+ * format can still be loaded, and are migrated to the binary format when they are.
+ * Once an index has been loaded or saved, later saves of the same index only append the changed entries to its
+ * {@link X34IndexJournal journal}. The journal is periodically compacted back into the base index file.
  */
 public class X34IndexIO
 {
     public final String INDEX_FILE_EXTENSION = ".x34i";
     public final String INDEX_REPORT_FILE_EXTENSION = ".index-changes";
 
+    // Minimum number of journal records before compaction is considered, and the maximum size of the journal relative to
+    // its base index before it is compacted.
+    private final int JOURNAL_COMPACT_MIN_RECORDS = 4096;
+    private final int JOURNAL_COMPACT_RATIO = 4;
+
     private File parent;
     private final DateFormat df = new SimpleDateFormat("YYYY-MM-DD HH:mm");
 
+    // Tracks the on-disk state of each index loaded or saved by this object, keyed by identity.
+    private final WeakHashMap<X34Index, PersistedState> persisted = new WeakHashMap<>();
+
     /**
      * Default constructor. Sets the parent directory to the default value as specified by the expression
      * {@code {@link ARKAppCompat#DESKTOP_DATA_ROOT} + "\\X34Indexes"}.
@@ -63,26 +83,50 @@ public class X34IndexIO
         if(!target.exists()) throw new IOException("Unable to locate index file for specified ID");
         if(!target.canRead()) throw new IOException("Unable to obtain read lock for specified index file");
 
-        ObjectInputStream is = new ObjectInputStream(new FileInputStream(target));
+        // If we have 1 byte or less in the file, there is no way it contains a valid index, so return an empty one.
+        if(target.length() <= 1) return new X34Index(nid);
+
+        // Check the file header to determine whether this is a binary or legacy (serialized) index, then rewind and
+        // hand the stream off to the appropriate reader.
+        boolean legacy;
+        long generation;
+        try(BufferedInputStream is = new BufferedInputStream(new FileInputStream(target))){
+            byte[] header = new byte[2];
+            is.mark(header.length);
+            legacy = is.read(header) == header.length && X34IndexCodec.isLegacyHeader(header);
+            is.reset();
+
+            generation = legacy ? 0 : X34IndexCodec.readGeneration(is);
+            index = legacy ? X34IndexCodec.readLegacy(is, nid) : X34IndexCodec.read(is);
+        }
 
-        // If we have more than 1 byte in the file, assume that the index is indeed valid and try to load it.
-        if(target.length() > 1){
+        // Migrate legacy files to the binary format now that we have them loaded. If this fails, the legacy file is
+        // still usable, so we can ignore the error and try again on the next load.
+        if(legacy){
             try{
-                index = (X34Index)is.readObject();
-            }catch (ClassNotFoundException | ClassCastException e){
-                index = new X34Index(nid);
-            }
-        }else{
-            index = new X34Index(nid);
+                generation = replaceIndexFile(target, index);
+                persisted.put(index, new PersistedState(target, index, index.entries.size(), generation, 0));
+            }catch (IOException ignored){}
+            return index;
         }
 
-        is.close();
+        // Replay any changes recorded in the journal since the base file was last written. Stale journals are left over
+        // from an interrupted compaction, and are already contained in the base file.
+        File journal = X34IndexJournal.getJournalFile(target);
+        int baseCount = index.entries.size();
+        int replayed = X34IndexJournal.replay(journal, index, generation);
+        if(replayed == -1 && journal.exists()) journal.delete();
+
+        persisted.put(index, new PersistedState(target, index, baseCount, generation, Math.max(replayed, 0)));
 
         return index;
     }
 
     /**
      * Saves the specified index to disk.
+     * If the index was previously loaded or saved by this object, and has only had entries appended to it or had existing
+     * entries changed since then, only those changes are written to the index's journal. Otherwise, or if the journal has
+     * grown too large, the whole index is written to a temporary file, which then atomically replaces the existing index file.
      * @throws IOException if the parent directory is invalid, or the index cannot be written
      */
     public synchronized void saveIndex(@NotNull X34Index index) throws IOException
@@ -94,24 +138,116 @@ public class X34IndexIO
 
         // correct the internal index ID to match the correctly neutralized version if it doesn't already
         index.id = X34Index.getNeutralSpacedID(index.id);
+        if(index.entries == null) index.entries = new ArrayList<>();
 
         // Generate filename. Filename is comprised of the neutralized ID of the index, followed by its processor ID if it has one, and then the file extension.
         // If a processor ID is present, it and the index ID will be separated by a percent sign.
         File target = assembleIndexFileDescriptor(index.id, index.metadata.get("processor"));
+        File journal = X34IndexJournal.getJournalFile(target);
 
-        // Generate changelog filename to match index file.
-        File changelog = new File(target.getAbsolutePath() + INDEX_REPORT_FILE_EXTENSION);
+        if(target.exists() && !target.canWrite()) throw new IOException("Unable to obtain write lock for specified index file");
+
+        // Try to work out what has changed since the last time the index was written. If this can't be done, fall back to
+        // writing the full index.
+        PersistedState state = persisted.get(index);
+        ArrayList<X34Image> appended = new ArrayList<>();
+        ArrayList<Integer> replaced = new ArrayList<>();
+        boolean canJournal = state != null && state.getChanges(target, index, appended, replaced);
+
+        if(canJournal && appended.size() == 0 && replaced.size() == 0) return;
+
+        int journalSize = canJournal ? state.journalRecords + appended.size() + replaced.size() : 0;
+        if(canJournal && journalSize < Math.max(JOURNAL_COMPACT_MIN_RECORDS, state.baseCount / JOURNAL_COMPACT_RATIO))
+        {
+            X34IndexJournal.append(journal, state.baseCount, state.generation, appended, replaced, index.entries);
+            persisted.put(index, new PersistedState(target, index, state.baseCount, state.generation, journalSize));
+
+            writeChangelog(target, index, String.format("Entries added to index: %d, updated: %d. New size: %d",
+                    appended.size(), replaced.size(), index.entries.size()));
+        }else{
+            boolean isIndexNew = !target.exists();
+
+            // Write the full index to a temporary file, then swap it in. The journal is now contained in the base file,
+            // so it can be deleted. If that fails (or we never get that far), the journal's generation stamp no longer
+            // matches the base file, so it will be discarded on the next load, or replaced on the next journal write.
+            long generation = replaceIndexFile(target, index);
+            if(journal.exists() && !journal.delete())
+                writeChangelog(target, index, "Unable to delete compacted journal. It no longer matches the index file, and will be discarded.");
+
+            persisted.put(index, new PersistedState(target, index, index.entries.size(), generation, 0));
+
+            writeChangelog(target, index, String.format(isIndexNew ? "Index created with %d entries." : canJournal ?
+                    "Index journal compacted. New size: %d" : "Entries added to index. New size: %d", index.entries.size()));
+        }
+    }
+
+    /**
+     * Checks if an index file exists that matches the specified ID and processor ID.
+     * Does not check index validity, only if the file is present and non-zero-length.
+     * To get more details about an index file, it must be loaded. For that, use {@link #loadIndex(String, String)}.
+     * @param id the ID of the index to load
+     * @param processor the ID of the processor that was used to create the target index, provide null to load indices without
+     *                  a processor identifier.
+     * @return {@code true} if an index file exists that correlates to the provided IDs, {@code false} if otherwise
+     */
+    public synchronized boolean checkIndex(@NotNull String id, @Nullable String processor)
+    {
+        if(id == null || id.length() == 0) throw new IllegalArgumentException("ID cannot be null or zero-length");
+
+        File target = assembleIndexFileDescriptor(id, processor);
+
+        return target.exists() && target.length() > 0;
+    }
+
+    /**
+     * Opens a read-only {@link X34IndexView view} of the index with the specified ID. Use this instead of {@link #loadIndex(String, String)}
+     * when the index only needs to be checked for hashes or counted, and does not need to be modified.
+     * The returned view should be closed once it is no longer needed.
+     * @param id the ID of the index to open
+     * @param processor the ID of the processor that was used to create the target index, provide null to open indices without
+     *                  a processor identifier.
+     * @return a view of the index correlating to the provided ID
+     * @throws IOException if the specified index cannot be found or another non-recoverable I/O error has occurred
+     */
+    public synchronized X34IndexView getIndexView(@NotNull String id, @Nullable String processor) throws IOException
+    {
+        if(id == null || id.length() == 0) throw new IllegalArgumentException("ID cannot be null or zero-length");
+        if(parent == null) throw new IllegalArgumentException("Index parent directory cannot be null");
+
+        return X34IndexView.open(assembleIndexFileDescriptor(id, processor));
+    }
 
-        boolean isIndexNew = !target.exists();
-        if(target.exists() && !target.delete()) throw new IOException("Unable to delete existing index file");
-        if(!target.createNewFile()) throw new IOException("Unable to create new index file");
-        if(!target.canWrite()) throw new IOException("Unable to obtain write lock for specified index file");
+    // Writes an index to a temporary file in binary format, then moves it over the specified file, so that the existing
+    // index file is never left partially written. Returns the generation stamp of the new file.
+    private long replaceIndexFile(File target, X34Index index) throws IOException
+    {
+        File temp = new File(target.getAbsolutePath() + ".tmp");
+        long generation;
+        try(FileOutputStream os = new FileOutputStream(temp)){
+            generation = X34IndexCodec.write(index, os);
+            os.getFD().sync();
+        }
 
-        // now that we're done with that, on to the ACTUAL index write, which is most likely shorter than the integrity checks above
-        ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(target));
-        if(index.entries == null || index.entries.size() == 0) os.write(7);
-        else os.writeObject(index);
-        os.close();
+        try{
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch (AtomicMoveNotSupportedException e){
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Refresh the hash file used by index views while we still have the index in memory. If this fails, it will be
+        // regenerated from the index file the next time a view is opened.
+        try{
+            X34IndexView.writeHashFile(target, index, generation);
+        }catch (IOException ignored){}
+
+        return generation;
+    }
+
+    // Appends a timestamped message to the changelog file for the specified index file, creating it if it does not exist.
+    private void writeChangelog(File target, X34Index index, String message) throws IOException
+    {
+        // Generate changelog filename to match index file.
+        File changelog = new File(target.getAbsolutePath() + INDEX_REPORT_FILE_EXTENSION);
 
         // Write change data to the changelog file, create it if it does not exist.
         boolean isNew = false;
@@ -135,30 +271,11 @@ public class X34IndexIO
             br.write("========");
         }
 
-        String currentTime = df.format(System.currentTimeMillis());
         br.newLine();
-        br.write(String.format(isIndexNew ? "%s: Index created with %d entries." : "%s: Entries added to index. New size: %d", currentTime, index.entries.size()));
+        br.write(df.format(System.currentTimeMillis()) + ": " + message);
         br.close();
     }
 
-    /**
-     * Checks if an index file exists that matches the specified ID and processor ID.
-     * Does not check index validity, only if the file is present and non-zero-length.
-     * To get more details about an index file, it must be loaded. For that, use {@link #loadIndex(String, String)}.
-     * @param id the ID of the index to load
-     * @param processor the ID of the processor that was used to create the target index, provide null to load indices without
-     *                  a processor identifier.
-     * @return {@code true} if an index file exists that correlates to the provided IDs, {@code false} if otherwise
-     */
-    public synchronized boolean checkIndex(@NotNull String id, @Nullable String processor)
-    {
-        if(id == null || id.length() == 0) throw new IllegalArgumentException("ID cannot be null or zero-length");
-
-        File target = assembleIndexFileDescriptor(id, processor);
-
-        return target.exists() && target.length() > 0;
-    }
-
     private File assembleIndexFileDescriptor(String id, String proc) {
         return new File(parent, id.replace("?", "").replace("*", "")  + (proc == null ? "" : "%" + proc) + INDEX_FILE_EXTENSION);
     }
@@ -181,4 +298,72 @@ public class X34IndexIO
     {
         return new File(parent.getAbsolutePath());
     }
+
+    /**
+     * Snapshot of an index's state as of the last time it was loaded or saved. Used to work out which entries have changed
+     * since then, so that only those entries need to be written to the journal.
+     */
+    private static class PersistedState
+    {
+        private final File target;
+        private final ArrayList<X34Image> list;
+        private final String id;
+        private final HashMap<String, String> metadata;
+        private final X34Image[] images;
+        private final URL[] sources;
+        private final String[] tags;
+        private final String[] processors;
+        private final byte[][] hashes;
+
+        final int baseCount;
+        final long generation;
+        final int journalRecords;
+
+        PersistedState(File target, X34Index index, int baseCount, long generation, int journalRecords)
+        {
+            this.target = target;
+            this.list = index.entries;
+            this.id = index.id;
+            this.metadata = new HashMap<>(index.metadata);
+            this.baseCount = baseCount;
+            this.generation = generation;
+            this.journalRecords = journalRecords;
+
+            int size = list.size();
+            images = list.toArray(new X34Image[size]);
+            sources = new URL[size];
+            tags = new String[size];
+            processors = new String[size];
+            hashes = new byte[size][];
+            for(int i = 0; i < size; i++){
+                sources[i] = images[i].source;
+                tags[i] = images[i].tag;
+                processors[i] = images[i].processorID;
+                hashes[i] = images[i].hash;
+            }
+        }
+
+        /**
+         * Compares the provided index against this snapshot, and adds any entries that have been appended or changed
+         * to the provided lists. Changes are detected by reference, so entries that have had their fields reassigned to
+         * equivalent values are still reported as changed.
+         * @return {@code true} if the index's changes can be described by appends and in-place replacements alone,
+         * {@code false} if the index must be written in full
+         */
+        boolean getChanges(File target, X34Index index, ArrayList<X34Image> appended, ArrayList<Integer> replaced)
+        {
+            if(!this.target.equals(target) || !target.exists() || index.entries != list || list.size() < images.length) return false;
+            if(!id.equals(index.id) || !metadata.equals(index.metadata)) return false;
+
+            for(int i = 0; i < images.length; i++){
+                X34Image x = list.get(i);
+                if(x != images[i]) return false;
+                if(x.source != sources[i] || x.tag != tags[i] || x.processorID != processors[i] || x.hash != hashes[i]) replaced.add(i);
+            }
+
+            for(int i = images.length; i < list.size(); i++) appended.add(list.get(i));
+
+            return true;
+        }
+    }
 }
@@ -0,0 +1,255 @@
+package X34.Core.IO;
+
+import X34.Core.X34Image;
+import X34.Core.X34Index;
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.net.URL;
+import java.util.ArrayList;
+
+/**
+ * Reads and writes append-only index journals. A journal sits next to its base index file, and records changes made to
+ * the index since the base file was last written, so that small changes to large indexes do not require the entire index
+ * to be rewritten.
+ * Each journal starts with the {@code int} magic number {@link #MAGIC}, a {@code short} format version, the {@code int}
+ * entry count of the base index that it applies to, and the {@code long} generation stamp of that base index (see
+ * {@link X34IndexCodec}). This is followed by any number of length-prefixed records, each of which either appends a new
+ * entry to the index, or replaces an existing entry at a specific position.
+ * Journals whose entry count or generation stamp does not match the loaded base index (for example, if the index was
+ * compacted but the journal could not be deleted afterwards) are considered stale. They are ignored when read, and
+ * replaced rather than appended to when written. Version 1 journals have no stamp, and only match version 1 base files.
+ */
+class X34IndexJournal
+{
+    /**
+     * The magic number at the start of every journal file (ASCII {@code X34J}).
+     */
+    static final int MAGIC = 0x5833344A;
+
+    /**
+     * The current journal format version.
+     */
+    static final short VERSION = 2;
+
+    /**
+     * The file extension appended to the full name of an index file to get the name of its journal.
+     */
+    static final String JOURNAL_FILE_EXTENSION = ".journal";
+
+    // Length of the journal header, in bytes, for version 1 and later journals.
+    private static final int HEADER_LENGTH_V1 = 10;
+    private static final int HEADER_LENGTH = 18;
+
+    static final byte RECORD_APPEND = 1;
+    static final byte RECORD_REPLACE = 2;
+
+    /**
+     * Appends a set of records to the specified journal file, creating it if necessary. If the existing journal is stale,
+     * it is replaced by a new one instead.
+     * Records are written with a single buffered write, and the file is synced to disk before this method returns.
+     * @param journal the journal file to append to
+     * @param baseCount the entry count of the base index file that this journal applies to
+     * @param generation the generation stamp of the base index file that this journal applies to
+     * @param appended the images to append to the index
+     * @param replaced the positions of any existing index entries that have been modified
+     * @param entries the full entry list of the index, used to look up the entries referenced by {@code replaced}
+     * @throws IOException if the journal cannot be written
+     */
+    static void append(@NotNull File journal, int baseCount, long generation, @NotNull ArrayList<X34Image> appended,
+                       @NotNull ArrayList<Integer> replaced, @NotNull ArrayList<X34Image> entries) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(buffer);
+
+        boolean create = !journal.exists() || journal.length() == 0;
+        if(!create){
+            try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))){
+                create = readHeader(is, baseCount, generation) < 0;
+            }catch (EOFException e){
+                create = true;
+            }
+        }
+
+        if(create){
+            os.writeInt(MAGIC);
+            os.writeShort(VERSION);
+            os.writeInt(baseCount);
+            os.writeLong(generation);
+        }
+
+        for(int pos : replaced) writeRecord(os, RECORD_REPLACE, pos, entries.get(pos));
+        for(X34Image x : appended) writeRecord(os, RECORD_APPEND, -1, x);
+        os.flush();
+
+        try(FileOutputStream fs = new FileOutputStream(journal, !create)){
+            buffer.writeTo(fs);
+            fs.getFD().sync();
+        }
+    }
+
+    /**
+     * Replays the contents of the specified journal onto an index that was loaded from its base file.
+     * If the last record in the journal is incomplete (for example, if a write was interrupted), it is discarded and
+     * truncated from the journal file.
+     * @param journal the journal file to read
+     * @param index the index to apply the journal's records to
+     * @param generation the generation stamp of the base index file that the index was loaded from
+     * @return the number of records that were applied, or {@code -1} if the journal was stale, corrupt, or missing
+     * @throws IOException if the journal cannot be read
+     */
+    static int replay(@NotNull File journal, @NotNull X34Index index, long generation) throws IOException
+    {
+        if(!journal.exists() || journal.length() == 0) return -1;
+        if(index.entries == null) index.entries = new ArrayList<>();
+
+        int count = 0;
+        long valid;
+        boolean torn = false;
+
+        try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))){
+            valid = readHeader(is, index.entries.size(), generation);
+            if(valid < 0) return -1;
+
+            while(true)
+            {
+                byte[] record;
+                try{
+                    int length = is.readInt();
+                    if(length <= 0 || length > journal.length() - valid - 4) throw new EOFException();
+                    record = new byte[length];
+                    is.readFully(record);
+                }catch (EOFException e){
+                    torn = valid < journal.length();
+                    break;
+                }
+
+                DataInputStream rs = new DataInputStream(new ByteArrayInputStream(record));
+                byte type = rs.readByte();
+                int pos = rs.readInt();
+                X34Image x = readImage(rs);
+
+                if(type == RECORD_APPEND) index.entries.add(x);
+                else if(type == RECORD_REPLACE && pos >= 0 && pos < index.entries.size()) index.entries.set(pos, x);
+                else throw new IOException("Index journal is corrupt");
+
+                valid += 4 + record.length;
+                count ++;
+            }
+        }catch (EOFException e){
+            return -1;
+        }
+
+        // Cut off any incomplete trailing record, so that records appended later on are not read as part of it.
+        if(torn){
+            try(RandomAccessFile raf = new RandomAccessFile(journal, "rw")){
+                raf.setLength(valid);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the hashes of every record in the specified journal, without building any {@link X34Image} objects or
+     * modifying the journal file. Incomplete trailing records are ignored.
+     * @param journal the journal file to read
+     * @param baseCount the entry count of the base index that the journal should apply to
+     * @param generation the generation stamp of the base index that the journal should apply to
+     * @param hashes the list to add the hash of each record to. Hashes from both appended and replaced entries are included.
+     * @param positions the list to add the position of each record to, in the same order as {@code hashes}. Appended
+     *                  entries have a position of {@code -1}; replaced entries have the position of the entry that they replaced.
+     * @return the number of entries appended to the index by the journal, or {@code -1} if the journal was stale, corrupt, or missing
+     * @throws IOException if the journal cannot be read
+     */
+    static int readHashes(@NotNull File journal, int baseCount, long generation, @NotNull ArrayList<byte[]> hashes,
+                          @NotNull ArrayList<Integer> positions) throws IOException
+    {
+        if(!journal.exists() || journal.length() == 0) return -1;
+
+        int appended = 0;
+        long valid;
+        try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))){
+            valid = readHeader(is, baseCount, generation);
+            if(valid < 0) return -1;
+
+            while(true)
+            {
+                byte[] record;
+                try{
+                    int length = is.readInt();
+                    if(length <= 0 || length > journal.length() - valid - 4) break;
+                    record = new byte[length];
+                    is.readFully(record);
+                }catch (EOFException e){
+                    break;
+                }
+
+                DataInputStream rs = new DataInputStream(new ByteArrayInputStream(record));
+                boolean append = rs.readByte() == RECORD_APPEND;
+                int pos = rs.readInt();
+                byte[] hash = new byte[rs.readUnsignedShort()];
+                rs.readFully(hash);
+                hashes.add(hash);
+                positions.add(append ? -1 : pos);
+                if(append) appended ++;
+
+                valid += 4 + record.length;
+            }
+        }catch (EOFException e){
+            return -1;
+        }
+
+        return appended;
+    }
+
+    /**
+     * Gets the journal file descriptor for the specified index file.
+     * @param indexFile the base index file
+     * @return the journal file that belongs to the provided index file. May or may not exist.
+     */
+    static File getJournalFile(@NotNull File indexFile) {
+        return new File(indexFile.getAbsolutePath() + JOURNAL_FILE_EXTENSION);
+    }
+
+    // Reads a journal header, and checks that it belongs to the specified base index. Returns the length of the header,
+    // or -1 if the journal is not a valid journal for that base index.
+    private static int readHeader(DataInputStream is, int baseCount, long generation) throws IOException
+    {
+        if(is.readInt() != MAGIC) return -1;
+        short version = is.readShort();
+        if(version > VERSION || version < 1 || is.readInt() != baseCount) return -1;
+
+        long stamp = version >= 2 ? is.readLong() : 0;
+        if(stamp != generation) return -1;
+        return version >= 2 ? HEADER_LENGTH : HEADER_LENGTH_V1;
+    }
+
+    private static void writeRecord(DataOutputStream os, byte type, int pos, X34Image x) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream rs = new DataOutputStream(buffer);
+
+        rs.writeByte(type);
+        rs.writeInt(pos);
+        rs.writeShort(x.hash == null ? 0 : x.hash.length);
+        if(x.hash != null) rs.write(x.hash);
+        rs.writeUTF(x.tag == null ? "" : x.tag);
+        rs.writeBoolean(x.processorID != null);
+        if(x.processorID != null) rs.writeUTF(x.processorID);
+        rs.writeUTF(x.source.toString());
+        rs.flush();
+
+        os.writeInt(buffer.size());
+        buffer.writeTo(os);
+    }
+
+    private static X34Image readImage(DataInputStream rs) throws IOException
+    {
+        byte[] hash = new byte[rs.readUnsignedShort()];
+        rs.readFully(hash);
+        String tag = rs.readUTF();
+        String proc = rs.readBoolean() ? rs.readUTF() : null;
+        return new X34Image(new URL(rs.readUTF()), tag, hash, proc);
+    }
+}
@@ -0,0 +1,404 @@
+package X34.Core.IO;
+
+import X34.Core.X34Image;
+import X34.Core.X34Index;
+import com.sun.istack.internal.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Provides a read-only view of an index file, answering hash lookups and size queries without loading the index into
+ * memory or building any {@link X34Image} objects.
+ * Lookups are served from a flat hash file written alongside the index file, which is memory-mapped when the view is opened.
+ * The hash file is laid out as follows, with all values in big-endian order:
+ * <ul>
+ * <li>Header: the {@code int} magic number {@link #MAGIC}, the {@code short} format version, the {@code long} length
+ *     and {@code long} last-modified time of the index file that the hash file was generated from, the {@code long}
+ *     generation stamp and {@code int} entry count of that index file, the {@code int} number of fixed-width hash
+ *     records, and the {@code int} width of each record</li>
+ * <li>Fixed-width hash records, sorted in ascending unsigned order</li>
+ * <li>Irregular hashes: an {@code int} count, followed by that many length-prefixed hashes. Used for entries whose hashes
+ *     are not exactly {@link X34IndexCodec#HASH_WIDTH} bytes long.</li>
+ * </ul>
+ * If the hash file is missing, or the length or last-modified time of its index file has changed, it is regenerated from the index file when the view is opened.
+ * Any changes recorded in the index's {@link X34IndexJournal journal} are also included in the view. Appended entries are
+ * simply added to the mapped hashes; if the journal replaces any existing entries, the view is instead built in memory
+ * from the index's hash section with the journal applied, so that replaced hashes are no longer reported.
+ * Views reflect the state of the index at the time they were opened, and do not pick up later changes to it.
+ */
+public class X34IndexView implements Closeable
+{
+    /**
+     * The magic number at the start of every hash file (ASCII {@code X34H}).
+     */
+    static final int MAGIC = 0x58333448;
+
+    /**
+     * The current hash file format version.
+     */
+    static final short VERSION = 3;
+
+    /**
+     * The file extension appended to the full name of an index file to get the name of its hash file.
+     */
+    static final String HASH_FILE_EXTENSION = ".hashes";
+
+    // Length of the hash file header, in bytes.
+    private static final int HEADER_LENGTH = 42;
+
+    // Positions of the header fields that are read from mapped hash files.
+    private static final int GENERATION_OFFSET = 22;
+    private static final int BASE_COUNT_OFFSET = 30;
+    private static final int RECORD_COUNT_OFFSET = 34;
+    private static final int WIDTH_OFFSET = 38;
+
+    private final FileChannel channel;
+    private final ByteBuffer records;
+    private final int recordCount;
+    private final int width;
+    private final int size;
+
+    // Hashes that are not stored in the fixed-width record section, either because they are irregular or because they
+    // were added to the index through its journal. ByteBuffers compare by content, so they can be used as set keys directly.
+    private final HashSet<ByteBuffer> extra;
+
+    private X34IndexView(FileChannel channel, ByteBuffer data, ArrayList<byte[]> journalHashes, int appended)
+    {
+        this.channel = channel;
+
+        int baseCount = data.getInt(BASE_COUNT_OFFSET);
+        recordCount = data.getInt(RECORD_COUNT_OFFSET);
+        width = data.getInt(WIDTH_OFFSET);
+
+        int irregularStart = HEADER_LENGTH + recordCount * width;
+        data.position(HEADER_LENGTH);
+        data.limit(irregularStart);
+        records = data.slice();
+        data.limit(data.capacity());
+
+        extra = new HashSet<>();
+        data.position(irregularStart);
+        int irregularCount = data.getInt();
+        for(int i = 0; i < irregularCount; i++){
+            byte[] hash = new byte[data.getShort() & 0xFFFF];
+            data.get(hash);
+            extra.add(ByteBuffer.wrap(hash));
+        }
+
+        for(byte[] hash : journalHashes) extra.add(ByteBuffer.wrap(hash));
+
+        size = baseCount + Math.max(appended, 0);
+    }
+
+    /**
+     * Opens a view of the specified index file, generating its hash file if necessary.
+     * @param indexFile the index file to open
+     * @return a view of the provided index file
+     * @throws IOException if the index file does not exist, or if it or its hash file cannot be read
+     */
+    static X34IndexView open(@NotNull File indexFile) throws IOException
+    {
+        if(!indexFile.exists() || indexFile.length() <= 1) throw new IOException("Unable to locate index file for specified ID");
+
+        File hashFile = getHashFile(indexFile);
+        File journal = X34IndexJournal.getJournalFile(indexFile);
+
+        ByteBuffer data = null;
+        if(!isHashFileCurrent(hashFile, indexFile))
+        {
+            // Regenerate the hash file from the index. If it can't be written to disk, serve the view from the in-memory
+            // copy instead.
+            byte[] generated = generateHashFile(indexFile, readIndexHashes(indexFile));
+            try{
+                writeHashFile(hashFile, generated);
+            }catch (IOException e){
+                data = ByteBuffer.wrap(generated);
+            }
+        }
+
+        FileChannel channel = data == null ? FileChannel.open(hashFile.toPath(), StandardOpenOption.READ) : null;
+        try{
+            if(channel != null) data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(data.getInt(0) != MAGIC || data.getShort(4) != VERSION) throw new IOException("Hash file is corrupt");
+
+            ArrayList<byte[]> journalHashes = new ArrayList<>();
+            ArrayList<Integer> positions = new ArrayList<>();
+            int appended = X34IndexJournal.readHashes(journal, data.getInt(BASE_COUNT_OFFSET), data.getLong(GENERATION_OFFSET), journalHashes, positions);
+            if(appended < 0 || appended == positions.size()) return new X34IndexView(channel, data, journalHashes, appended);
+
+            // The journal replaces existing entries, whose old hashes are somewhere in the sorted records and can't be
+            // masked out by position. Rebuild the hashes in entry order with the journal applied, and serve the view from that.
+            if(channel != null) channel.close();
+            List<byte[]> hashes = getHashList(readIndexHashes(indexFile));
+            for(int i = 0; i < journalHashes.size(); i++){
+                int pos = positions.get(i);
+                if(pos < 0) hashes.add(journalHashes.get(i));
+                else if(pos < hashes.size()) hashes.set(pos, journalHashes.get(i));
+            }
+
+            return new X34IndexView(null, ByteBuffer.wrap(generateHashFile(indexFile, getHashSection(hashes))), new ArrayList<>(), 0);
+        }catch (IOException | RuntimeException e){
+            if(channel != null) channel.close();
+            throw e instanceof IOException ? (IOException)e : new IOException("Hash file is corrupt", e);
+        }
+    }
+
+    /**
+     * Writes the hash file for an index that has just been written to the specified file.
+     * @param indexFile the index file that the provided index was written to
+     * @param index the index that was written
+     * @param generation the generation stamp that the index file was written with
+     * @throws IOException if the hash file cannot be written
+     */
+    static void writeHashFile(@NotNull File indexFile, @NotNull X34Index index, long generation) throws IOException
+    {
+        ArrayList<byte[]> hashes = new ArrayList<>();
+        if(index.entries != null) for(X34Image x : index.entries) hashes.add(x.hash);
+
+        X34IndexCodec.HashSection section = getHashSection(hashes);
+        section.generation = generation;
+        writeHashFile(getHashFile(indexFile), generateHashFile(indexFile, section));
+    }
+
+    /**
+     * Gets the hash file descriptor for the specified index file.
+     * @param indexFile the index file
+     * @return the hash file that belongs to the provided index file. May or may not exist.
+     */
+    static File getHashFile(@NotNull File indexFile) {
+        return new File(indexFile.getAbsolutePath() + HASH_FILE_EXTENSION);
+    }
+
+    /**
+     * Checks if the index that this view represents contains an entry with the specified hash.
+     * Standard-width hashes are found by binary search over the mapped hash file. All others are looked up in memory.
+     * @param hash the hash to search for
+     * @return {@code true} if the index contains an entry with a matching hash, {@code false} otherwise
+     */
+    public boolean containsHash(byte[] hash)
+    {
+        if(hash == null) return false;
+        if(extra.contains(ByteBuffer.wrap(hash))) return true;
+        if(hash.length != width || width != X34IndexCodec.HASH_WIDTH) return false;
+
+        long high = ByteBuffer.wrap(hash).getLong(0);
+        long low = ByteBuffer.wrap(hash).getLong(8);
+
+        int min = 0;
+        int max = recordCount - 1;
+        while(min <= max)
+        {
+            int mid = (min + max) >>> 1;
+            int cmp = compare(records.getLong(mid * width), records.getLong(mid * width + 8), high, low);
+            if(cmp < 0) min = mid + 1;
+            else if(cmp > 0) max = mid - 1;
+            else return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of entries in the index that this view represents.
+     * @return the number of entries in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Closes the file backing this view. Calling any other method on the view after it is closed has undefined results.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel != null) channel.close();
+    }
+
+    private static boolean isHashFileCurrent(File hashFile, File indexFile)
+    {
+        if(!hashFile.exists() || hashFile.length() < HEADER_LENGTH) return false;
+
+        try(DataInputStream is = new DataInputStream(new FileInputStream(hashFile))){
+            return is.readInt() == MAGIC && is.readShort() == VERSION && is.readLong() == indexFile.length()
+                    && is.readLong() == indexFile.lastModified();
+        }catch (IOException e){
+            return false;
+        }
+    }
+
+    // Reads the hashes from an index file, whether it is in binary or legacy format.
+    private static X34IndexCodec.HashSection readIndexHashes(File indexFile) throws IOException
+    {
+        try(BufferedInputStream is = new BufferedInputStream(new FileInputStream(indexFile))){
+            byte[] header = new byte[2];
+            is.mark(header.length);
+            boolean legacy = is.read(header) == header.length && X34IndexCodec.isLegacyHeader(header);
+            is.reset();
+
+            if(!legacy) return X34IndexCodec.readHashes(is);
+
+            // Legacy indexes have no separate hash section, so the whole index has to be loaded to get at its hashes.
+            // This only happens once, since the index is migrated to the binary format the next time it is loaded.
+            ArrayList<byte[]> hashes = new ArrayList<>();
+            for(X34Image x : X34IndexCodec.readLegacy(is, indexFile.getName()).entries) hashes.add(x.hash);
+            return getHashSection(hashes);
+        }
+    }
+
+    // Builds the hash section for an index from the hashes of its entries, in entry order.
+    private static X34IndexCodec.HashSection getHashSection(List<byte[]> entries)
+    {
+        X34IndexCodec.HashSection section = new X34IndexCodec.HashSection();
+        int width = X34IndexCodec.HASH_WIDTH;
+        ArrayList<Integer> irregularEntries = new ArrayList<>();
+
+        section.count = entries.size();
+        section.hashes = new byte[section.count * width];
+        section.irregular = new ArrayList<>();
+        for(int i = 0; i < section.count; i++){
+            byte[] hash = entries.get(i);
+            if(hash != null && hash.length == width) System.arraycopy(hash, 0, section.hashes, i * width, width);
+            else if(hash != null){
+                irregularEntries.add(i);
+                section.irregular.add(hash);
+            }
+        }
+
+        section.irregularEntries = new int[irregularEntries.size()];
+        for(int i = 0; i < irregularEntries.size(); i++) section.irregularEntries[i] = irregularEntries.get(i);
+        return section;
+    }
+
+    // Gets the hash of every entry in a hash section, in entry order.
+    private static List<byte[]> getHashList(X34IndexCodec.HashSection section)
+    {
+        int width = X34IndexCodec.HASH_WIDTH;
+        ArrayList<byte[]> hashes = new ArrayList<>(section.count);
+        for(int i = 0; i < section.count; i++){
+            byte[] hash = new byte[width];
+            System.arraycopy(section.hashes, i * width, hash, 0, width);
+            hashes.add(hash);
+        }
+
+        for(int i = 0; i < section.irregularEntries.length; i++){
+            int pos = section.irregularEntries[i];
+            if(pos >= 0 && pos < section.count) hashes.set(pos, section.irregular.get(i));
+        }
+
+        return hashes;
+    }
+
+    // Builds the full contents of a hash file from the hash section of an index.
+    private static byte[] generateHashFile(File indexFile, X34IndexCodec.HashSection section) throws IOException
+    {
+        int width = X34IndexCodec.HASH_WIDTH;
+
+        // Irregular entries have zero-filled placeholders in the fixed-width section, which have to be left out.
+        boolean[] skip = new boolean[section.count];
+        for(int i : section.irregularEntries) if(i >= 0 && i < section.count) skip[i] = true;
+
+        int fixedCount = section.count - section.irregularEntries.length;
+        long[] high = new long[fixedCount];
+        long[] low = new long[fixedCount];
+        ByteBuffer hashes = ByteBuffer.wrap(section.hashes);
+        for(int i = 0, j = 0; i < section.count; i++){
+            if(skip[i]) continue;
+            high[j] = hashes.getLong(i * width);
+            low[j] = hashes.getLong(i * width + 8);
+            j ++;
+        }
+
+        sort(high, low);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER_LENGTH + fixedCount * width + 4);
+        DataOutputStream os = new DataOutputStream(buffer);
+        os.writeInt(MAGIC);
+        os.writeShort(VERSION);
+        os.writeLong(indexFile.length());
+        os.writeLong(indexFile.lastModified());
+        os.writeLong(section.generation);
+        os.writeInt(section.count);
+        os.writeInt(fixedCount);
+        os.writeInt(width);
+        for(int i = 0; i < fixedCount; i++){
+            os.writeLong(high[i]);
+            os.writeLong(low[i]);
+        }
+
+        os.writeInt(section.irregular.size());
+        for(byte[] hash : section.irregular){
+            os.writeShort(hash.length);
+            os.write(hash);
+        }
+
+        os.flush();
+        return buffer.toByteArray();
+    }
+
+    private static void writeHashFile(File hashFile, byte[] contents) throws IOException
+    {
+        File temp = new File(hashFile.getAbsolutePath() + ".tmp");
+        try(FileOutputStream os = new FileOutputStream(temp)){
+            os.write(contents);
+        }
+
+        try{
+            Files.move(temp.toPath(), hashFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch (AtomicMoveNotSupportedException e){
+            Files.move(temp.toPath(), hashFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Compares two hashes in packed form, treating each as a single unsigned 128-bit value.
+    private static int compare(long highA, long lowA, long highB, long lowB)
+    {
+        int cmp = Long.compareUnsigned(highA, highB);
+        return cmp != 0 ? cmp : Long.compareUnsigned(lowA, lowB);
+    }
+
+    // Heap-sorts a list of packed hashes, moving the high and low halves of each hash together.
+    private static void sort(long[] high, long[] low)
+    {
+        int n = high.length;
+        for(int i = n / 2 - 1; i >= 0; i--) siftDown(high, low, i, n);
+
+        for(int end = n - 1; end > 0; end--){
+            swap(high, low, 0, end);
+            siftDown(high, low, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] high, long[] low, int root, int end)
+    {
+        while(true)
+        {
+            int child = root * 2 + 1;
+            if(child >= end) return;
+            if(child + 1 < end && compare(high[child], low[child], high[child + 1], low[child + 1]) < 0) child ++;
+            if(compare(high[root], low[root], high[child], low[child]) >= 0) return;
+
+            swap(high, low, root, child);
+            root = child;
+        }
+    }
+
+    private static void swap(long[] high, long[] low, int a, int b)
+    {
+        long th = high[a];
+        long tl = low[a];
+        high[a] = high[b];
+        low[a] = low[b];
+        high[b] = th;
+        low[b] = tl;
+    }
+}
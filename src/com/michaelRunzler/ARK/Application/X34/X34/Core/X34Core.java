@@ -8,7 +8,6 @@ import X34.Processors.X34RetrievalProcessor;
 import com.sun.istack.internal.NotNull;
 import core.CoreUtil.AUNIL.LogEventLevel;
 import core.CoreUtil.AUNIL.XLoggerInterpreter;
-import core.CoreUtil.ARKArrayUtil;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -19,10 +18,8 @@ import javafx.collections.ObservableMap;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 import static X34.Core.X34CoreMetadataKeyMap.*;
 
@@ -33,6 +30,8 @@ public class X34Core
 {
     private XLoggerInterpreter log;
     private X34IndexIO loader;
+    private X34DownloadEngine downloader;
+    private boolean closed;
 
     private SimpleIntegerProperty maxPaginationProperty;
     private SimpleIntegerProperty paginationProperty;
@@ -49,12 +48,27 @@ public class X34Core
 
     private SimpleBooleanProperty pushToIndexProperty;
     private SimpleBooleanProperty cancelledProperty;
+    private SimpleBooleanProperty parallelRetrievalProperty;
     
     private ObservableMap<Object, ObservableValue> properties;
+    private ObservableMap<String, X34ProcessorState> processorStates;
+
+    // Processor IDs of all currently running processors during parallel retrieval, in start order.
+    private final LinkedHashSet<String> runningProcessors;
+    private int maxConcurrentProcessors;
 
     public static final int INVALID_INT_PROPERTY_VALUE = -1;
 
-    private boolean propertyBypass;
+    /**
+     * The default maximum number of processors that will be run at the same time during parallel retrieval.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_PROCESSORS = 4;
+
+    // How often the coordinating thread checks for cancellation while waiting on parallel processors, in milliseconds.
+    private static final long CANCEL_POLL_INTERVAL = 250;
+
+    // How long to wait for cancelled processors to exit before returning, in milliseconds.
+    private static final long CANCEL_GRACE_PERIOD = 5000;
 
     /**
      * Default constructor. Uses the main instance from the {@link X34IndexDelegator}
@@ -65,7 +79,9 @@ public class X34Core
         log = new XLoggerInterpreter();
         loader = X34IndexDelegator.getMainInstance();
         log.logEvent("Initialization complete.");
-        propertyBypass = false;
+        runningProcessors = new LinkedHashSet<>();
+        maxConcurrentProcessors = DEFAULT_MAX_CONCURRENT_PROCESSORS;
+        downloader = new X34DownloadEngine(this);
         propertyInit();
     }
 
@@ -79,10 +95,30 @@ public class X34Core
         log = new XLoggerInterpreter();
         loader = X34IndexDelegator.getDynamicInstance(IID);
         log.logEvent("Initialization complete.");
-        propertyBypass = false;
+        runningProcessors = new LinkedHashSet<>();
+        maxConcurrentProcessors = DEFAULT_MAX_CONCURRENT_PROCESSORS;
+        downloader = new X34DownloadEngine(this);
         propertyInit();
     }
     
+    /**
+     * Creates a worker core that shares its index I/O object and index-push setting with the specified parent core,
+     * and is cancelled whenever the parent is cancelled. Used by {@link X34RetrievalScheduler} to run several retrieval
+     * operations at once without the operations overwriting each other's progress properties.
+     * @param parent the core to pull configuration and cancellation state from
+     */
+    X34Core(@NotNull X34Core parent)
+    {
+        log = new XLoggerInterpreter();
+        loader = parent.loader;
+        runningProcessors = new LinkedHashSet<>();
+        maxConcurrentProcessors = DEFAULT_MAX_CONCURRENT_PROCESSORS;
+        downloader = new X34DownloadEngine(this);
+        propertyInit();
+        pushToIndexProperty.set(parent.pushToIndexProperty.get());
+        cancelledProperty.bind(parent.cancelledProperty);
+    }
+
     private void propertyInit()
     {
         maxPaginationProperty = new SimpleIntegerProperty();
@@ -96,6 +132,7 @@ public class X34Core
         downloadProgressProperty = new SimpleIntegerProperty();
         pushToIndexProperty = new SimpleBooleanProperty(true);
         cancelledProperty = new SimpleBooleanProperty();
+        parallelRetrievalProperty = new SimpleBooleanProperty(false);
 
         Map<Object, ObservableValue> propertyBackingMap = new HashMap<>();
         propertyBackingMap.put(this, maxPaginationProperty);
@@ -110,8 +147,10 @@ public class X34Core
         propertyBackingMap.put(this, downloadProgressProperty);
         propertyBackingMap.put(this, pushToIndexProperty);
         propertyBackingMap.put(this, cancelledProperty);
+        propertyBackingMap.put(this, parallelRetrievalProperty);
 
         properties = FXCollections.observableMap(propertyBackingMap);
+        processorStates = FXCollections.observableMap(new LinkedHashMap<>());
     }
 
     /**
@@ -124,6 +163,15 @@ public class X34Core
      */
     public ArrayList<X34Image> retrieve(@NotNull X34Schema config) throws ValidationException, IOException
     {
+        return retrieve(config, null);
+    }
+
+    // If the provided state is null, this is treated as a standalone retrieval, and the shared properties are updated
+    // directly. Otherwise, telemetry is pushed to the provided state, and the caller is responsible for the shared properties.
+    private ArrayList<X34Image> retrieve(@NotNull X34Schema config, X34ProcessorState state) throws ValidationException, IOException
+    {
+        boolean standalone = state == null;
+
         log.logEvent("Validating schema...");
         // Validate the incoming Schema.
         if(!config.validate()) throw new ValidationException("Schema failed to pass validation");
@@ -147,9 +195,10 @@ public class X34Core
             log.logEvent("No index available. New index created.");
         }
 
-        config = setSchemaMetadataProperties(config);
+        if(standalone) state = new X34ProcessorState(config.type, maxPaginationProperty, paginationProperty);
+        config = setSchemaMetadataProperties(config, state);
 
-        if(!propertyBypass) {
+        if(standalone) {
             currentQueryProperty.setValue(config.query);
             currentProcessorProperty.setValue(config.type);
             maxProcessorCountProperty.setValue(1);
@@ -163,7 +212,7 @@ public class X34Core
         // If the index doesn't have a meta tag indicating processor origin, add it.
         if(!index.metadata.containsKey("processor")) index.metadata.put("processor", processor.getID());
 
-        if(!propertyBypass) {
+        if(standalone) {
             currentQueryProperty.setValue(null);
             currentProcessorProperty.setValue(null);
             maxProcessorCountProperty.setValue(INVALID_INT_PROPERTY_VALUE);
@@ -193,6 +242,9 @@ public class X34Core
      * Runs a retrieval operation with the {@link X34Schema Schema(s)} contained within the supplied {@link X34Rule}.
      * After validating all arguments and their subcomponents, calls {@link #retrieve(X34Schema)} for each valid contained {@link X34Schema},
      * and adds its results to a master {@link ArrayList}, which is then returned.
+     * If {@link #parallelRetrievalProperty() parallel retrieval} is enabled, the contained Schemas are run at the same time
+     * (up to the limit set by {@link #setMaxConcurrentProcessors(int)}), and each one reports its progress to its own
+     * {@link X34ProcessorState}, available from {@link #getProcessorStates()}. Results are still returned in Schema order.
      * @param configList the {@link X34Rule} to pull the list of {@link X34Schema Schemas} from
      * @return the complete list of {@link X34Image Images} from each retrieval process, compounded into a single {@link ArrayList}
      * @throws ValidationException if the provided {@link X34Rule} or all of its contained {@link X34Schema Schemas} fail validation
@@ -203,11 +255,25 @@ public class X34Core
         if(configList == null || !configList.validate()) throw new ValidationException("Rule failed to pass validation.");
         ArrayList<X34Schema> schemas = new ArrayList<>(Arrays.asList(configList.getSchemas()));
 
-        propertyBypass = true;
-
         currentQueryProperty.setValue(configList.query);
         maxProcessorCountProperty.setValue(schemas.size());
 
+        ArrayList<X34Image> returned;
+        if(parallelRetrievalProperty.get() && schemas.size() > 1 && maxConcurrentProcessors > 1) returned = retrieveParallel(schemas);
+        else returned = retrieveSerial(schemas);
+
+        currentQueryProperty.setValue(null);
+        currentProcessorProperty.setValue(null);
+        maxProcessorCountProperty.setValue(INVALID_INT_PROPERTY_VALUE);
+        processorCountProperty.setValue(INVALID_INT_PROPERTY_VALUE);
+
+        return returned;
+    }
+
+    private ArrayList<X34Image> retrieveSerial(ArrayList<X34Schema> schemas)
+    {
+        processorStates.clear();
+
         // Iterate through the available schemas and run retrieval for all of them, adding their results to the master array as we do so.
         ArrayList<X34Image> returned = new ArrayList<>();
         for(int i = 0; i < schemas.size(); i++)
@@ -221,34 +287,188 @@ public class X34Core
 
             X34Schema schema = schemas.get(i);
 
-            schema = setSchemaMetadataProperties(schema);
+            // Only one processor runs at a time, so it can report directly to the shared pagination properties.
+            X34ProcessorState state = new X34ProcessorState(schema.type, maxPaginationProperty, paginationProperty);
+            processorStates.put(schema.type, state);
 
-            processorCountProperty.setValue(i + 1);
             currentProcessorProperty.setValue(schema.type);
+            processorCountProperty.setValue(i + 1);
             log.logEvent("Running retrieval operation " + (i + 1) + " of " + schemas.size());
             try {
-                returned.addAll(retrieve(schema));
+                returned.addAll(retrieve(schema, state));
                 log.logEvent("Retrieval " + (i + 1) + " of " + schemas.size() + " completed with no errors.");
             } catch (IOException e) {
                 log.logEvent(LogEventLevel.ERROR, "Retrieval operation returned exception with partial results, see below.");
                 log.logEvent(e);
+                state.errorStateProperty().set(e.getMessage());
             } catch (ValidationException e){
                 log.logEvent(LogEventLevel.WARNING, e.getMessage());
+                state.errorStateProperty().set(e.getMessage());
             }
+
+            state.finishedProperty().set(true);
         }
 
-        currentQueryProperty.setValue(null);
-        currentProcessorProperty.setValue(null);
-        maxProcessorCountProperty.setValue(INVALID_INT_PROPERTY_VALUE);
-        processorCountProperty.setValue(INVALID_INT_PROPERTY_VALUE);
-        propertyBypass = false;
+        return returned;
+    }
+
+    private ArrayList<X34Image> retrieveParallel(ArrayList<X34Schema> schemas)
+    {
+        int threads = Math.min(schemas.size(), maxConcurrentProcessors);
+        log.logEvent("Running " + schemas.size() + " retrieval operations on " + threads + " threads...");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "X34 Processor");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<ArrayList<X34Image>> completion = new ExecutorCompletionService<>(executor);
+
+        // Each processor gets its own set of telemetry properties. The shared pagination properties show the combined
+        // progress of all processors that have reported so far.
+        processorStates.clear();
+        synchronized (runningProcessors) {
+            runningProcessors.clear();
+        }
+        maxPaginationProperty.set(INVALID_INT_PROPERTY_VALUE);
+        paginationProperty.set(INVALID_INT_PROPERTY_VALUE);
+        processorCountProperty.set(0);
+
+        ArrayList<X34ProcessorState> states = new ArrayList<>();
+        for(X34Schema schema : schemas)
+        {
+            X34ProcessorState state = new X34ProcessorState(schema.type);
+            state.paginationProperty().addListener((observable, oldValue, newValue) -> updateCombinedPagination(states));
+            state.maxPaginationProperty().addListener((observable, oldValue, newValue) -> updateCombinedPagination(states));
+            states.add(state);
+            processorStates.put(schema.type, state);
+        }
+
+        ArrayList<Future<ArrayList<X34Image>>> tasks = new ArrayList<>();
+        for(int i = 0; i < schemas.size(); i++)
+        {
+            X34Schema schema = schemas.get(i);
+            X34ProcessorState state = states.get(i);
+            int pos = i + 1;
+
+            tasks.add(completion.submit(() -> {
+                setProcessorRunning(schema.type, true);
+                log.logEvent("Running retrieval operation " + pos + " of " + schemas.size() + " (" + schema.type + ")");
+                try {
+                    ArrayList<X34Image> result = retrieve(schema, state);
+                    log.logEvent("Retrieval " + pos + " of " + schemas.size() + " completed with no errors.");
+                    return result;
+                } catch (IOException e) {
+                    log.logEvent(LogEventLevel.ERROR, "Retrieval operation returned exception with partial results, see below.");
+                    log.logEvent(e);
+                    state.errorStateProperty().set(e.getMessage());
+                } catch (ValidationException e){
+                    log.logEvent(LogEventLevel.WARNING, e.getMessage());
+                    state.errorStateProperty().set(e.getMessage());
+                } finally {
+                    state.finishedProperty().set(true);
+                    setProcessorRunning(schema.type, false);
+                }
+                return new ArrayList<>();
+            }));
+        }
+
+        // Wait for all processors to finish, checking for cancellation periodically. Processors check the cancellation
+        // property themselves, but any that are waiting on the network or sleeping are interrupted as well.
+        int completed = 0;
+        boolean cancelled = false;
+        while(completed < tasks.size())
+        {
+            if(cancelledProperty.get()){
+                log.logEvent(LogEventLevel.WARNING, "Retrieval sequence cancelled. Aborting.");
+                cancelled = true;
+                break;
+            }
+
+            try {
+                if(completion.poll(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS) == null) continue;
+            } catch (InterruptedException e) {
+                log.logEvent(LogEventLevel.WARNING, "Retrieval sequence interrupted. Aborting.");
+                cancelled = true;
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            completed ++;
+            processorCountProperty.set(completed);
+        }
+
+        if(cancelled) for(Future<ArrayList<X34Image>> f : tasks) f.cancel(true);
+        executor.shutdown();
+
+        // Give cancelled processors a chance to exit before returning, so that they do not overlap with any retrieval
+        // operations that the caller starts afterwards.
+        if(cancelled){
+            try {
+                if(!executor.awaitTermination(CANCEL_GRACE_PERIOD, TimeUnit.MILLISECONDS))
+                    log.logEvent(LogEventLevel.WARNING, "One or more processors did not exit after cancellation.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Merge results in Schema order. As with serial retrieval, keep the results from any processors that finished
+        // before cancellation, since their changes may have already been pushed to their indexes.
+        ArrayList<X34Image> returned = new ArrayList<>();
+        for(Future<ArrayList<X34Image>> f : tasks)
+        {
+            if(!f.isDone() || f.isCancelled()) continue;
+            try {
+                returned.addAll(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.logEvent(LogEventLevel.ERROR, "Retrieval operation encountered an unexpected error, see below.");
+                log.logEvent(e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+            }
+        }
+
+        maxPaginationProperty.set(INVALID_INT_PROPERTY_VALUE);
+        paginationProperty.set(INVALID_INT_PROPERTY_VALUE);
 
         return returned;
     }
 
+    // Sets the shared pagination properties to the sum of the pagination properties of all processors that have reported
+    // a valid value. Called from processor threads.
+    private synchronized void updateCombinedPagination(ArrayList<X34ProcessorState> states)
+    {
+        int max = 0;
+        int current = 0;
+        boolean valid = false;
+        for(X34ProcessorState state : states)
+        {
+            int m = state.maxPaginationProperty().get();
+            int c = state.paginationProperty().get();
+            if(m == INVALID_INT_PROPERTY_VALUE || c == INVALID_INT_PROPERTY_VALUE) continue;
+            max += m;
+            current += c;
+            valid = true;
+        }
+
+        maxPaginationProperty.set(valid ? max : INVALID_INT_PROPERTY_VALUE);
+        paginationProperty.set(valid ? current : INVALID_INT_PROPERTY_VALUE);
+    }
+
+    private void setProcessorRunning(String id, boolean running)
+    {
+        synchronized (runningProcessors) {
+            if(running) runningProcessors.add(id);
+            else runningProcessors.remove(id);
+            currentProcessorProperty.setValue(runningProcessors.isEmpty() ? null : String.join(", ", runningProcessors));
+        }
+    }
+
     /**
      * Writes a series of {@link X34Image images} to disk. Names files according to the result of calling
      * {@link X34RetrievalProcessor#getFilenameFromURL(URL)} on the Image's URL.
+     * Files are downloaded concurrently by this object's {@link X34DownloadEngine}, which can be configured through
+     * {@link #getDownloadEngine()}.
      * @param images the list of images to write to disk
      * @param parent the parent directory to write image file to
      * @param overwriteExisting set this to true if you wish to attempt to overwrite existing files with the same names if
@@ -265,30 +485,7 @@ public class X34Core
 
         log.logEvent("Attempting to write " + images.size() + " file" + (images.size() == 1 ? "" : "s" ) + " to disk...");
 
-        maxDownloadProgressProperty.set(images.size());
-
-        int count = 0;
-        for(int i = 0; i < images.size(); i++)
-        {
-            if(cancelledProperty.get()){
-                log.logEvent(LogEventLevel.WARNING, "Download cancelled.");
-                break;
-            }
-
-            downloadProgressProperty.set(i + 1);
-            X34Image x = images.get(i);
-            currentDownloadProperty.set(ARKArrayUtil.byteArrayToHexString(x.hash));
-            try {
-                if(x.writeToFile(parent, overwriteExisting)) log.logEvent("File " + ARKArrayUtil.byteArrayToHexString(x.hash) + " already exists.");
-                else{
-                    log.logEvent("File " + ARKArrayUtil.byteArrayToHexString(x.hash) + " written successfully.");
-                    count ++;
-                }
-            }catch (IOException e){
-                log.logEvent(LogEventLevel.ERROR, "Error 05031: File " + ARKArrayUtil.byteArrayToHexString(x.hash) + " encountered critical write error, see below for details.");
-                log.logEvent(e);
-            }
-        }
+        int count = downloader.download(images, parent, overwriteExisting);
 
         log.logEvent(count + " of " + images.size() + " file" + (images.size() == 1 ? "" : "s") + " written successfully.");
 
@@ -298,23 +495,40 @@ public class X34Core
     }
 
     // Schema must have been pre-validated
-    private X34Schema setSchemaMetadataProperties(X34Schema schema)
+    private X34Schema setSchemaMetadataProperties(X34Schema schema, X34ProcessorState state)
     {
-        if(schema.metadata == null) schema.metadata = new HashMap<>();
+        // Schemas from the same Rule share the Rule's metadata map, so copy it before adding per-processor telemetry
+        // properties. This also keeps the (non-serializable) properties out of the Rule itself.
+        schema.metadata = schema.metadata == null ? new HashMap<>() : new HashMap<>(schema.metadata);
 
         schema.metadata.put(PUSH_TO_INDEX, pushToIndexProperty.getValue());
         schema.metadata.put(TELEMETRY_CAPABLE, Boolean.TRUE);
-        schema.metadata.put(TELEM_CURR_PAGE_PROP, paginationProperty);
-        schema.metadata.put(TELEM_MAX_PAGE_PROP, maxPaginationProperty);
+        schema.metadata.put(TELEM_CURR_PAGE_PROP, state.paginationProperty());
+        schema.metadata.put(TELEM_MAX_PAGE_PROP, state.maxPaginationProperty());
+        schema.metadata.put(TELEM_ERROR_STATE_PROP, state.errorStateProperty());
         schema.metadata.put(IS_CANCELLED, cancelledProperty);
 
         return schema;
     }
 
+    /**
+     * Releases the loggers held by this core and its {@link X34DownloadEngine}. Call this once the core is no longer
+     * needed; it should not be used afterwards. Calling this more than once has no effect.
+     */
+    public synchronized void close()
+    {
+        if(closed) return;
+        closed = true;
+        downloader.close();
+        log.disassociate();
+    }
+
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
-        log.disassociate();
+        synchronized (this) {
+            if(!closed) log.disassociate();
+        }
     }
     
     //
@@ -365,6 +579,44 @@ public class X34Core
         return cancelledProperty;
     }
 
+    public final SimpleBooleanProperty parallelRetrievalProperty(){
+        return parallelRetrievalProperty;
+    }
+
+    /**
+     * Whether or not the {@link X34Schema}s contained in {@link X34Rule}s executed by this object should be run at the
+     * same time rather than one after another.
+     * @param parallel {@code true} if the {@link X34Schema}s in each {@link X34Rule} should be run in parallel, {@code false} otherwise
+     */
+    public void setParallelRetrieval(boolean parallel){
+        parallelRetrievalProperty.set(parallel);
+    }
+
+    /**
+     * Sets the maximum number of processors that will be run at the same time when {@link #setParallelRetrieval(boolean) parallel retrieval}
+     * is enabled. Takes effect on the next call to {@link #retrieve(X34Rule)}.
+     * @param max the maximum number of concurrent processors. Values less than 2 disable parallel retrieval.
+     */
+    public void setMaxConcurrentProcessors(int max){
+        this.maxConcurrentProcessors = Math.max(1, max);
+    }
+
+    public int getMaxConcurrentProcessors(){
+        return maxConcurrentProcessors;
+    }
+
+    public X34DownloadEngine getDownloadEngine() {
+        return downloader;
+    }
+
+    /**
+     * Gets the per-processor state map for the most recent (or current) call to {@link #retrieve(X34Rule)}.
+     * @return a map of processor IDs to their {@link X34ProcessorState}s. Cleared at the start of every Rule retrieval.
+     */
+    public final ObservableMap<String, X34ProcessorState> getProcessorStates() {
+        return processorStates;
+    }
+
     /**
      * Whether or not all {@link X34Schema}s and {@link X34Rule}s executed by this object should push their results to
      * their respective index files. Note that it is the responsibility of {@link X34RetrievalProcessor}s to enforce this
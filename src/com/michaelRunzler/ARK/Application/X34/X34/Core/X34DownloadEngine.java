@@ -0,0 +1,357 @@
+package X34.Core;
+
+import com.sun.istack.internal.NotNull;
+import core.CoreUtil.AUNIL.LogEventLevel;
+import core.CoreUtil.AUNIL.XLoggerInterpreter;
+import core.CoreUtil.ARKArrayUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads lists of {@link X34Image images} to disk using a bounded pool of worker threads.
+ * The number of downloads running against any single host is capped separately from the overall pool size, and failed
+ * downloads are retried with exponential backoff if the failure was a network or server error that a retry may fix.
+ * Images that would be written to the same file are never downloaded at the same time.
+ * Progress and cancellation are handled through the download and cancellation properties of the owning {@link X34Core}.
+ */
+public class X34DownloadEngine
+{
+    /**
+     * The default number of downloads that will be run at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 6;
+
+    /**
+     * The default number of downloads that will be run at the same time from the same host.
+     */
+    public static final int DEFAULT_MAX_PER_HOST = 3;
+
+    /**
+     * The default number of times a failed download will be retried before it is given up on.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * The default delay before the first retry of a failed download, in milliseconds. Doubled for each successive retry.
+     */
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+
+    // How often the coordinating thread checks for cancellation and retry-ready downloads, in milliseconds.
+    private static final long POLL_INTERVAL = 250;
+
+    // How long to wait for cancelled downloads to exit before returning, in milliseconds.
+    private static final long CANCEL_GRACE_PERIOD = 5000;
+
+    private XLoggerInterpreter log;
+    private X34Core core;
+
+    private int maxConcurrent;
+    private int maxPerHost;
+    private int maxRetries;
+    private long retryDelay;
+
+    // Download state. All of the following are guarded by the lock object, and are only valid during a call to download().
+    private final Object lock;
+    private LinkedList<Download> pending;
+    private HashMap<String, Integer> runningPerHost;
+    private HashSet<File> runningTargets;
+    private ArrayList<Download> running;
+    private int finished;
+    private int written;
+    private boolean stopped;
+
+    /**
+     * Creates a new download engine that reports to the specified core.
+     * @param core the core to push download progress to and pull cancellation state from
+     */
+    X34DownloadEngine(@NotNull X34Core core)
+    {
+        this.log = new XLoggerInterpreter();
+        this.core = core;
+        this.maxConcurrent = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+        this.maxPerHost = DEFAULT_MAX_PER_HOST;
+        this.maxRetries = DEFAULT_MAX_RETRIES;
+        this.retryDelay = DEFAULT_RETRY_DELAY;
+        this.lock = new Object();
+    }
+
+    /**
+     * Downloads a list of images to the specified directory, blocking until all downloads have either finished or
+     * failed, or until the owning core is cancelled.
+     * The owning core's {@link X34Core#downloadProgressProperty()} tracks the number of images that have finished
+     * (successfully or otherwise), and its {@link X34Core#currentDownloadProperty()} holds the hash of the most recently
+     * started download.
+     * @param images the list of images to download
+     * @param parent the directory to write images to. Must already exist.
+     * @param overwriteExisting set this to true if existing files with the same names should be overwritten
+     * @return the number of images that were written successfully. Images that already existed and were not overwritten
+     *         are not counted.
+     */
+    int download(@NotNull ArrayList<X34Image> images, @NotNull File parent, boolean overwriteExisting)
+    {
+        if(images.isEmpty()) return 0;
+
+        int threads = Math.min(maxConcurrent, images.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "X34 Download Worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        synchronized (lock) {
+            pending = new LinkedList<>();
+            for(X34Image x : images) pending.add(new Download(x, parent));
+            runningPerHost = new HashMap<>();
+            runningTargets = new HashSet<>();
+            running = new ArrayList<>();
+            finished = 0;
+            written = 0;
+            stopped = false;
+        }
+
+        core.maxDownloadProgressProperty().set(images.size());
+        core.downloadProgressProperty().set(0);
+
+        boolean cancelled = false;
+        synchronized (lock)
+        {
+            while(finished < images.size())
+            {
+                if(core.cancelledProperty().get()){
+                    cancelled = true;
+                    break;
+                }
+
+                // Downloads waiting out a retry delay are not started until they are ready, so wake up for them as well
+                // as for finished downloads.
+                long wait = dispatch(executor, parent, overwriteExisting);
+                try {
+                    lock.wait(Math.max(1, Math.min(POLL_INTERVAL, wait)));
+                } catch (InterruptedException e) {
+                    cancelled = true;
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            stopped = true;
+            pending.clear();
+            if(cancelled) for(Download d : running) if(d.future != null) d.future.cancel(true);
+        }
+
+        executor.shutdown();
+
+        if(cancelled){
+            log.logEvent(LogEventLevel.WARNING, "Download cancelled.");
+            try {
+                if(!executor.awaitTermination(CANCEL_GRACE_PERIOD, TimeUnit.MILLISECONDS))
+                    log.logEvent(LogEventLevel.WARNING, "One or more downloads did not exit after cancellation.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    // Starts as many pending downloads as the concurrency limits allow. Must be called while holding the lock.
+    // Returns the time until the next delayed download becomes ready, in milliseconds, or Long.MAX_VALUE if there are none.
+    private long dispatch(ExecutorService executor, File parent, boolean overwriteExisting)
+    {
+        long now = System.currentTimeMillis();
+        long nextReady = Long.MAX_VALUE;
+
+        Iterator<Download> it = pending.iterator();
+        while(!stopped && running.size() < maxConcurrent && it.hasNext())
+        {
+            Download d = it.next();
+            if(d.notBefore > now){
+                nextReady = Math.min(nextReady, d.notBefore - now);
+                continue;
+            }
+
+            int count = runningPerHost.getOrDefault(d.host, 0);
+            if(count >= maxPerHost) continue;
+
+            // Two downloads to the same file would write to the same partial file at the same time. Hold this one back
+            // until the other has finished, at which point it will find the file already written.
+            if(d.target != null && runningTargets.contains(d.target)) continue;
+
+            it.remove();
+            runningPerHost.put(d.host, count + 1);
+            if(d.target != null) runningTargets.add(d.target);
+            running.add(d);
+            d.future = executor.submit(() -> execute(d, parent, overwriteExisting));
+        }
+
+        return nextReady;
+    }
+
+    private void execute(Download d, File parent, boolean overwriteExisting)
+    {
+        String hash = ARKArrayUtil.byteArrayToHexString(d.image.hash);
+        core.currentDownloadProperty().set(hash);
+
+        boolean success = false;
+        boolean retry = false;
+        try {
+            if(d.image.writeToFile(parent, overwriteExisting)) log.logEvent("File " + hash + " already exists.");
+            else{
+                log.logEvent("File " + hash + " written successfully.");
+                success = true;
+            }
+        } catch (IOException e) {
+            if(isRetryable(e) && d.attempts < maxRetries && !core.cancelledProperty().get()){
+                retry = true;
+                log.logEvent(LogEventLevel.WARNING, "File " + hash + " encountered write error (" + e.getMessage() + "), retrying...");
+            }else{
+                log.logEvent(LogEventLevel.ERROR, "Error 05031: File " + hash + " encountered critical write error, see below for details.");
+                log.logEvent(e);
+            }
+        } catch (RuntimeException e) {
+            log.logEvent(LogEventLevel.ERROR, "Error 05031: File " + hash + " encountered critical write error, see below for details.");
+            log.logEvent(e);
+        }
+
+        synchronized (lock)
+        {
+            runningPerHost.put(d.host, runningPerHost.get(d.host) - 1);
+            if(d.target != null) runningTargets.remove(d.target);
+            running.remove(d);
+
+            if(retry && !stopped){
+                d.notBefore = System.currentTimeMillis() + (retryDelay << d.attempts);
+                d.attempts ++;
+                pending.add(d);
+            }else{
+                finished ++;
+                if(success) written ++;
+                core.downloadProgressProperty().set(finished);
+            }
+
+            lock.notifyAll();
+        }
+    }
+
+    // Only network errors, server errors, timeouts and rate limiting may be fixed by retrying. Missing files, other client
+    // errors and local I/O errors will fail the same way again.
+    private static boolean isRetryable(IOException e)
+    {
+        // Timeouts, dropped or refused connections, and failed host lookups.
+        if(e instanceof InterruptedIOException || e instanceof SocketException || e instanceof UnknownHostException) return true;
+
+        String message = e.getMessage();
+        if(message == null) return false;
+
+        // The connection closed early, or the server sent back a bad partial response.
+        if(message.startsWith("Remote file transfer incomplete") || message.startsWith("Server returned an invalid partial response")) return true;
+
+        String marker = "Server returned HTTP response code: ";
+        if(!message.contains(marker)) return false;
+
+        int start = message.indexOf(marker) + marker.length();
+        try {
+            int code = Integer.parseInt(message.substring(start, Math.min(message.length(), start + 3)));
+            return code >= 500 || code == 408 || code == 429;
+        } catch (NumberFormatException e1) {
+            return true;
+        }
+    }
+
+    /**
+     * Sets the maximum number of downloads that will be run at the same time. Takes effect on the next download operation.
+     * @param max the maximum number of concurrent downloads. Values less than 1 are treated as 1.
+     */
+    public void setMaxConcurrentDownloads(int max) {
+        this.maxConcurrent = Math.max(1, max);
+    }
+
+    /**
+     * Sets the maximum number of downloads from the same host that will be run at the same time.
+     * Takes effect on the next download operation.
+     * @param max the maximum number of concurrent downloads per host. Values less than 1 are treated as 1.
+     */
+    public void setMaxDownloadsPerHost(int max) {
+        this.maxPerHost = Math.max(1, max);
+    }
+
+    /**
+     * Sets the number of times a failed download will be retried before it is given up on.
+     * @param retries the maximum number of retries. Values less than 0 are treated as 0.
+     */
+    public void setMaxRetries(int retries) {
+        this.maxRetries = Math.max(0, retries);
+    }
+
+    /**
+     * Sets the delay before the first retry of a failed download. The delay is doubled for each successive retry.
+     * @param delay the initial retry delay, in milliseconds. Values less than 0 are treated as 0.
+     */
+    public void setRetryDelay(long delay) {
+        this.retryDelay = Math.max(0, delay);
+    }
+
+    public int getMaxConcurrentDownloads() {
+        return maxConcurrent;
+    }
+
+    public int getMaxDownloadsPerHost() {
+        return maxPerHost;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Releases this engine's logger. Called by the owning {@link X34Core} when it is closed.
+     */
+    void close() {
+        log.disassociate();
+    }
+
+    private static class Download
+    {
+        final X34Image image;
+        final String host;
+        final File target;
+        int attempts;
+        long notBefore;
+        Future<?> future;
+
+        Download(X34Image image, File parent)
+        {
+            this.image = image;
+            this.host = image.source.getHost() == null ? "" : image.source.getHost().toLowerCase();
+            this.target = getTarget(image, parent);
+            this.attempts = 0;
+            this.notBefore = 0;
+        }
+
+        // If the target file cannot be worked out, the download will fail with the same error when it runs, so it does
+        // not need to be held back for anything else.
+        private static File getTarget(X34Image image, File parent)
+        {
+            try {
+                return image.getTargetFile(parent).getAbsoluteFile();
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
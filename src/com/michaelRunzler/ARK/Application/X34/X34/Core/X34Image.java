@@ -58,16 +58,28 @@ public class X34Image implements Serializable
         if(parent == null) throw new IllegalArgumentException("Parent directory cannot be null");
         if(source == null) throw new IOException("Source URI is invalid");
 
-        // If the internal processor ID is null, use the default behavior (last index of '/') instead of the processor derivation.
-        File f = new File(parent, this.processorID == null ? this.source.getFile().substring(this.source.getFile().lastIndexOf('/'), this.source.getFile().length())
-                : X34ProcessorRegistry.getProcessorForID(this.processorID).getFilenameFromURL(this.source));
-
+        File f = getTargetFile(parent);
         if(f.exists() && !overwriteExisting) return true;
 
-        IOTools.getFileFromURL(this.source.toString(), f, overwriteExisting);
+        // Resumable mode keeps partial data from failed downloads, so that retries only fetch the remainder of the file.
+        IOTools.getFileFromURLResumable(this.source, f, overwriteExisting);
         return false;
     }
 
+    /**
+     * Gets the file that {@link #writeToFile(File, boolean)} will write this image to.
+     * @param parent the directory in which the file would be placed
+     * @return the file that this image would be written to in the specified directory
+     */
+    public File getTargetFile(@NotNull File parent)
+    {
+        if(parent == null) throw new IllegalArgumentException("Parent directory cannot be null");
+
+        // If the internal processor ID is null, use the default behavior (last index of '/') instead of the processor derivation.
+        return new File(parent, this.processorID == null ? this.source.getFile().substring(this.source.getFile().lastIndexOf('/'), this.source.getFile().length())
+                : X34ProcessorRegistry.getProcessorForID(this.processorID).getFilenameFromURL(this.source));
+    }
+
     /**
      * Verifies this object against the remote copy of its linked image, checking that its internal references are still valid.
      * Verification is typically done using a 32 or 48 byte insecure cryptographic hash, although exact procedures vary
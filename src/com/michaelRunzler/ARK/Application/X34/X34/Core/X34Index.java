@@ -4,24 +4,39 @@ import X34.Processors.X34ProcessorRegistry;
 import core.CoreUtil.ARKArrayUtil;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * Stores {@link X34Image images} in a compact, metadata-enabled format.
  */
 public class X34Index implements Serializable
 {
+    private static final long serialVersionUID = -5025730726597337267L;
+
     public String id;
     public ArrayList<X34Image> entries;
     public HashMap<String, String> metadata;
 
+    // Secondary lookup table mapping image hashes to their position in the entry list. Not serialized, since it is rebuilt
+    // on deserialization and whenever the entry list is found to have been changed without going through this class.
+    private transient HashMap<HashKey, Integer> hashTable;
+    private transient ArrayList<X34Image> hashTableSource;
+    private transient int hashTableSize;
+    private transient int hashTableChanges;
+
     public X34Index(String id)
     {
         this.id = getNeutralSpacedID(id);
-        this.entries = new ArrayList<>();
+        this.entries = new EntryList();
         this.metadata = new HashMap<>();
     }
 
@@ -44,19 +59,109 @@ public class X34Index implements Serializable
 
     /**
      * Gets an entry from this index by its hash code.
+     * Lookups are done through a hash table keyed by the packed value of the provided hash, and run in constant time.
+     * The table is kept in sync with the entry list automatically, although entries added through {@link #addEntry(X34Image)}
+     * are indexed immediately instead of on the next lookup. The list that this index creates for {@link #entries} reports
+     * every change made to it, so in-place changes such as {@code set} or {@code remove} are picked up on the next lookup.
+     * If {@link #entries} has been replaced with some other list, changes to it cannot be seen, so a lookup that misses
+     * rebuilds the table once before giving up. This makes misses on such lists run in linear time.
      * @param hash the hashcode to search for in the index
      * @return the index of the matching {@link X34Image image} if found, or -1 if no matching entry is found
      */
     public int getEntryByHash(byte[] hash)
     {
-        if(entries == null || entries.size() == 0) return -1;
+        if(entries == null || entries.size() == 0 || hash == null) return -1;
 
-        for(int i = 0; i < entries.size(); i++){
-            X34Image x = entries.get(i);
-            if(ARKArrayUtil.compareByteArrays(x.hash, hash)) return i;
+        syncHashTable();
+
+        HashKey key = new HashKey(hash);
+        Integer pos = hashTable.get(key);
+        if(pos == null && isTracked()) return -1;
+
+        // If the entry at the stored position no longer matches, or there was no match in a list that may have been changed
+        // without us knowing, rebuild the table from scratch and try again.
+        if(pos == null || pos >= entries.size() || entries.get(pos) == null || !ARKArrayUtil.compareByteArrays(entries.get(pos).hash, hash)){
+            rebuildHashTable();
+            pos = hashTable.get(key);
         }
 
-        return -1;
+        return pos == null ? -1 : pos;
+    }
+
+    /**
+     * Checks if this index contains an entry with the specified hash code.
+     * @param hash the hashcode to search for in the index
+     * @return {@code true} if a matching {@link X34Image image} is present in this index, {@code false} otherwise
+     * @see #getEntryByHash(byte[]) for more information on how lookups are performed
+     */
+    public boolean containsHash(byte[] hash)
+    {
+        return getEntryByHash(hash) > -1;
+    }
+
+    /**
+     * Adds an entry to this index, updating the hash lookup table as it does so.
+     * This is the preferred way to add entries to an index, although adding them directly to {@link #entries} is still
+     * supported.
+     * @param image the {@link X34Image image} to add to the index
+     */
+    public void addEntry(X34Image image)
+    {
+        if(image == null) return;
+        if(entries == null) entries = new EntryList();
+
+        syncHashTable();
+        entries.add(image);
+        indexEntry(entries.size() - 1);
+        hashTableSize = entries.size();
+    }
+
+    /**
+     * Brings the hash lookup table up to date with the entry list. If entries have only been appended since the last sync,
+     * only the new entries are indexed. Otherwise, the table is rebuilt from scratch.
+     */
+    private void syncHashTable()
+    {
+        if(hashTable == null || hashTableSource != entries || entries.size() < hashTableSize
+                || (entries instanceof EntryList && ((EntryList)entries).changes != hashTableChanges)){
+            rebuildHashTable();
+            return;
+        }
+
+        for(int i = hashTableSize; i < entries.size(); i++) indexEntry(i);
+        hashTableSize = entries.size();
+    }
+
+    private void rebuildHashTable()
+    {
+        hashTableSource = entries;
+        hashTable = new HashMap<>(entries == null ? 16 : (int)(entries.size() / 0.75f) + 1);
+        hashTableSize = 0;
+        if(entries == null) return;
+        if(entries instanceof EntryList) hashTableChanges = ((EntryList)entries).changes;
+
+        for(int i = 0; i < entries.size(); i++) indexEntry(i);
+        hashTableSize = entries.size();
+    }
+
+    // Only the first occurrence of a given hash is indexed, to match the original first-match linear search behavior.
+    private void indexEntry(int pos)
+    {
+        X34Image x = entries.get(pos);
+        if(x == null || x.hash == null) return;
+        hashTable.putIfAbsent(new HashKey(x.hash), pos);
+    }
+
+    // Whether every change to the entry list since the last rebuild is known to the hash table.
+    private boolean isTracked() {
+        return entries instanceof EntryList && !((EntryList)entries).untracked;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        if(entries != null && !(entries instanceof EntryList)) entries = new EntryList(entries);
+        rebuildHashTable();
     }
 
     /**
@@ -89,4 +194,151 @@ public class X34Index implements Serializable
 
         return X34ProcessorRegistry.getProcessorForID(index.metadata.get("processor")).validateIndex(index);
     }
+
+    /**
+     * Hash table key for image hashes. Standard 16-byte hashes are packed into two {@code long}s, and are compared
+     * by value. Hashes of any other length are packed as far as possible, and fall back to a full array comparison.
+     */
+    private static final class HashKey
+    {
+        private final long high;
+        private final long low;
+        private final byte[] raw;
+
+        HashKey(byte[] hash)
+        {
+            long h = 0;
+            long l = 0;
+            for(int i = 0; i < hash.length && i < 8; i++) h = (h << 8) | (hash[i] & 0xFF);
+            for(int i = 8; i < hash.length && i < 16; i++) l = (l << 8) | (hash[i] & 0xFF);
+
+            this.high = h;
+            this.low = l;
+            this.raw = hash.length == 16 ? null : hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(this == o) return true;
+            if(!(o instanceof HashKey)) return false;
+
+            HashKey k = (HashKey)o;
+            if(k.high != high || k.low != low) return false;
+            if(raw == null && k.raw == null) return true;
+            return raw != null && k.raw != null && ARKArrayUtil.compareByteArrays(raw, k.raw);
+        }
+
+        @Override
+        public int hashCode() {
+            long x = high ^ (low * 31);
+            return (int)(x ^ (x >>> 32));
+        }
+    }
+
+    /**
+     * Entry list that counts every change other than an append, so that the hash lookup table knows when it must be rebuilt.
+     * Appends are not counted, since new tail entries are indexed incrementally. Views returned by {@link #subList(int, int)}
+     * cannot be tracked, so once one has been handed out, the list is treated as if it were any other list.
+     * Serialized as a plain {@link ArrayList} so that stored indices do not depend on this class.
+     */
+    private static final class EntryList extends ArrayList<X34Image>
+    {
+        private transient int changes;
+        private transient boolean untracked;
+
+        EntryList() {
+            super();
+        }
+
+        EntryList(Collection<? extends X34Image> c) {
+            super(c);
+        }
+
+        private void changed() {
+            changes ++;
+        }
+
+        @Override
+        public X34Image set(int index, X34Image element) {
+            changed();
+            return super.set(index, element);
+        }
+
+        @Override
+        public void add(int index, X34Image element) {
+            changed();
+            super.add(index, element);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends X34Image> c) {
+            changed();
+            return super.addAll(index, c);
+        }
+
+        @Override
+        public X34Image remove(int index) {
+            changed();
+            return super.remove(index);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            changed();
+            return super.remove(o);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            changed();
+            return super.removeAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            changed();
+            return super.retainAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super X34Image> filter) {
+            changed();
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<X34Image> operator) {
+            changed();
+            super.replaceAll(operator);
+        }
+
+        @Override
+        public void sort(Comparator<? super X34Image> c) {
+            changed();
+            super.sort(c);
+        }
+
+        @Override
+        public void clear() {
+            changed();
+            super.clear();
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            changed();
+            super.removeRange(fromIndex, toIndex);
+        }
+
+        @Override
+        public List<X34Image> subList(int fromIndex, int toIndex) {
+            untracked = true;
+            return super.subList(fromIndex, toIndex);
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(this);
+        }
+    }
 }
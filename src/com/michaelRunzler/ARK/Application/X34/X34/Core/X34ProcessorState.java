@@ -0,0 +1,66 @@
+package X34.Core;
+
+import com.sun.istack.internal.NotNull;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+
+/**
+ * Holds the progress state of a single {@link X34.Processors.X34RetrievalProcessor processor} during a retrieval operation.
+ * When an {@link X34Rule} is run in parallel mode by {@link X34Core}, each of its {@link X34Schema Schemas} is given its own
+ * state object, so that processors running at the same time do not overwrite each other's telemetry.
+ */
+public class X34ProcessorState
+{
+    private final String processorID;
+
+    private SimpleIntegerProperty maxPaginationProperty;
+    private SimpleIntegerProperty paginationProperty;
+    private SimpleStringProperty  errorStateProperty;
+    private SimpleBooleanProperty finishedProperty;
+
+    /**
+     * Creates a new state object with its own set of properties.
+     * @param processorID the ID of the processor that this state object belongs to
+     */
+    public X34ProcessorState(@NotNull String processorID)
+    {
+        this(processorID, new SimpleIntegerProperty(X34Core.INVALID_INT_PROPERTY_VALUE), new SimpleIntegerProperty(X34Core.INVALID_INT_PROPERTY_VALUE));
+    }
+
+    /**
+     * Creates a new state object that wraps an existing set of pagination properties. Used when only one processor is
+     * running at a time, and it can safely report to a set of shared properties.
+     * @param processorID the ID of the processor that this state object belongs to
+     * @param maxPaginationProperty the property to use for the maximum page count
+     * @param paginationProperty the property to use for the current page
+     */
+    public X34ProcessorState(@NotNull String processorID, @NotNull SimpleIntegerProperty maxPaginationProperty, @NotNull SimpleIntegerProperty paginationProperty)
+    {
+        this.processorID = processorID;
+        this.maxPaginationProperty = maxPaginationProperty;
+        this.paginationProperty = paginationProperty;
+        this.errorStateProperty = new SimpleStringProperty();
+        this.finishedProperty = new SimpleBooleanProperty(false);
+    }
+
+    public String getProcessorID() {
+        return processorID;
+    }
+
+    public final SimpleIntegerProperty maxPaginationProperty() {
+        return maxPaginationProperty;
+    }
+
+    public final SimpleIntegerProperty paginationProperty() {
+        return paginationProperty;
+    }
+
+    public final SimpleStringProperty errorStateProperty() {
+        return errorStateProperty;
+    }
+
+    public final SimpleBooleanProperty finishedProperty() {
+        return finishedProperty;
+    }
+}
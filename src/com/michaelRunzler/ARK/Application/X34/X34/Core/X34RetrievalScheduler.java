@@ -0,0 +1,420 @@
+package X34.Core;
+
+import com.sun.istack.internal.NotNull;
+import core.CoreUtil.AUNIL.LogEventLevel;
+import core.CoreUtil.AUNIL.XLoggerInterpreter;
+import javafx.beans.property.SimpleIntegerProperty;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a list of {@link X34Rule Rules} concurrently. Each Rule is split into its component {@link X34Schema Schemas},
+ * which are run on a bounded pool of worker threads, with a separate limit on the number of Schemas that may use the
+ * same processor at once, so that no single repository is sent too many requests at the same time.
+ * Schemas that share a query and processor (and therefore an index) are never run at the same time, since each retrieval
+ * loads, modifies and saves its own copy of the index, and concurrent saves would lose or duplicate each other's entries.
+ * The results of each Rule are passed to a {@link RuleListener} as soon as all of its Schemas have finished, rather than
+ * once the entire list is complete.
+ *
+ * Configuration (index-push state) and cancellation are taken from a parent {@link X34Core}, which also receives summary
+ * progress telemetry (current queries and processors, and completed/total Schema counts) while the scheduler is running.
+ * Call {@link #close()} once the scheduler is no longer needed.
+ */
+public class X34RetrievalScheduler
+{
+    /**
+     * The default maximum number of Schemas that will be run at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_RETRIEVALS = 4;
+
+    /**
+     * The default maximum number of Schemas that will be run at the same time using the same processor.
+     */
+    public static final int DEFAULT_MAX_PER_PROCESSOR = 2;
+
+    // How often the coordinating thread checks for cancellation while waiting on retrievals, in milliseconds.
+    private static final long CANCEL_POLL_INTERVAL = 250;
+
+    // How long to wait for cancelled retrievals to exit before returning, in milliseconds.
+    private static final long CANCEL_GRACE_PERIOD = 5000;
+
+    private XLoggerInterpreter log;
+    private X34Core parent;
+
+    private int maxConcurrent;
+    private int maxPerProcessor;
+
+    private SimpleIntegerProperty ruleCountProperty;
+    private SimpleIntegerProperty maxRuleCountProperty;
+
+    // Scheduling state. All of the following are guarded by the lock object, and are only valid during a call to run().
+    private final Object lock;
+    private LinkedList<Job> pending;
+    private HashMap<String, Integer> runningPerProcessor;
+    private HashSet<String> runningIndexes;
+    private ArrayList<Job> running;
+    private int runningCount;
+    private int completedJobs;
+    private int totalJobs;
+    private boolean stopped;
+
+    /**
+     * Creates a new scheduler that pulls its configuration from the specified core.
+     * @param parent the core to pull the index-push setting and cancellation state from. Retrievals are cancelled by
+     *               calling {@link X34Core#cancelRetrieval()} on this core.
+     */
+    public X34RetrievalScheduler(@NotNull X34Core parent)
+    {
+        this.log = new XLoggerInterpreter();
+        this.parent = parent;
+        this.maxConcurrent = DEFAULT_MAX_CONCURRENT_RETRIEVALS;
+        this.maxPerProcessor = DEFAULT_MAX_PER_PROCESSOR;
+        this.lock = new Object();
+
+        ruleCountProperty = new SimpleIntegerProperty(X34Core.INVALID_INT_PROPERTY_VALUE);
+        maxRuleCountProperty = new SimpleIntegerProperty(X34Core.INVALID_INT_PROPERTY_VALUE);
+    }
+
+    /**
+     * Runs retrieval for every valid {@link X34Rule} in the provided list, blocking until all retrievals have finished
+     * or the parent core has been cancelled.
+     * Invalid Rules are skipped with a warning. If retrieval is cancelled, any Rules that have at least one finished Schema
+     * are still passed to the listener with their partial results, since their changes may have already been pushed to
+     * their indexes.
+     * @param rules the list of Rules to run
+     * @param listener the listener to pass each Rule's results to. Called from worker threads, or from the calling thread
+     *                 if retrieval is cancelled. Calls for different Rules may overlap.
+     */
+    public void run(@NotNull List<X34Rule> rules, @NotNull RuleListener listener)
+    {
+        ArrayList<RuleTracker> trackers = new ArrayList<>();
+        LinkedList<Job> jobs = new LinkedList<>();
+
+        for(X34Rule rule : rules)
+        {
+            if(rule == null || !rule.validate()){
+                log.logEvent(LogEventLevel.WARNING, "Rule " + (rule == null ? "null" : rule.query) + " failed to pass validation, skipping.");
+                continue;
+            }
+
+            X34Schema[] schemas = rule.getSchemas();
+            RuleTracker tracker = new RuleTracker(rule, schemas.length);
+            trackers.add(tracker);
+            for(int i = 0; i < schemas.length; i++) jobs.add(new Job(tracker, schemas[i], i));
+        }
+
+        if(jobs.isEmpty()) return;
+
+        int threads = Math.min(maxConcurrent, jobs.size());
+        log.logEvent("Running " + trackers.size() + " rule" + (trackers.size() == 1 ? "" : "s") + " (" + jobs.size() + " retrieval operations) on " + threads + " threads...");
+
+        // Each worker thread gets its own core, so that concurrent retrievals do not share progress properties.
+        // Worker cores only last for this run, and are closed once it is over.
+        ArrayList<X34Core> workerCores = new ArrayList<>(threads);
+        for(int i = 0; i < threads; i++) workerCores.add(new X34Core(parent));
+        ArrayBlockingQueue<X34Core> cores = new ArrayBlockingQueue<>(threads, false, workerCores);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "X34 Retrieval Worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        synchronized (lock) {
+            pending = jobs;
+            runningPerProcessor = new HashMap<>();
+            runningIndexes = new HashSet<>();
+            running = new ArrayList<>();
+            runningCount = 0;
+            completedJobs = 0;
+            totalJobs = jobs.size();
+            stopped = false;
+        }
+
+        ruleCountProperty.set(0);
+        maxRuleCountProperty.set(trackers.size());
+        parent.maxProcessorCountProperty().set(totalJobs);
+        parent.processorCountProperty().set(0);
+        parent.maxPaginationProperty().set(X34Core.INVALID_INT_PROPERTY_VALUE);
+        parent.paginationProperty().set(X34Core.INVALID_INT_PROPERTY_VALUE);
+
+        dispatch(executor, cores, listener);
+
+        boolean cancelled = false;
+        synchronized (lock)
+        {
+            while(completedJobs < totalJobs)
+            {
+                if(parent.cancelledProperty().get()){
+                    cancelled = true;
+                    break;
+                }
+
+                try {
+                    lock.wait(CANCEL_POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    cancelled = true;
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            // Stop any further jobs from being started, and interrupt any that are still running.
+            stopped = true;
+            pending.clear();
+            if(cancelled) for(Job j : running) if(j.future != null) j.future.cancel(true);
+        }
+
+        executor.shutdown();
+
+        if(cancelled)
+        {
+            log.logEvent(LogEventLevel.WARNING, "Retrieval sequence cancelled. Aborting.");
+            try {
+                if(!executor.awaitTermination(CANCEL_GRACE_PERIOD, TimeUnit.MILLISECONDS))
+                    log.logEvent(LogEventLevel.WARNING, "One or more retrieval operations did not exit after cancellation.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Report any Rules that were partially complete when retrieval was cancelled.
+            for(RuleTracker t : trackers)
+            {
+                ArrayList<X34Image> partial;
+                synchronized (lock) {
+                    if(t.reported || t.finished == 0) continue;
+                    t.reported = true;
+                    partial = t.collect();
+                }
+
+                notifyListener(listener, t.rule, partial);
+            }
+        }
+
+        // Any retrieval that outlived the cancellation grace period has its later log events rejected, rather than
+        // keeping its core's loggers registered.
+        for(X34Core c : workerCores) c.close();
+
+        parent.currentQueryProperty().set(null);
+        parent.currentProcessorProperty().set(null);
+        parent.maxProcessorCountProperty().set(X34Core.INVALID_INT_PROPERTY_VALUE);
+        parent.processorCountProperty().set(X34Core.INVALID_INT_PROPERTY_VALUE);
+        ruleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
+        maxRuleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
+    }
+
+    // Starts as many pending jobs as the concurrency limits allow. Jobs are started in list order, skipping any whose
+    // processor is already at its limit, or whose index is already in use by another running job.
+    private void dispatch(ExecutorService executor, BlockingQueue<X34Core> cores, RuleListener listener)
+    {
+        synchronized (lock)
+        {
+            Iterator<Job> it = pending.iterator();
+            while(!stopped && runningCount < maxConcurrent && it.hasNext())
+            {
+                Job j = it.next();
+                int count = runningPerProcessor.getOrDefault(j.schema.type, 0);
+                if(count >= maxPerProcessor || runningIndexes.contains(getIndexKey(j.schema))) continue;
+
+                it.remove();
+                runningPerProcessor.put(j.schema.type, count + 1);
+                runningIndexes.add(getIndexKey(j.schema));
+                running.add(j);
+                runningCount ++;
+                j.future = executor.submit(() -> execute(j, executor, cores, listener));
+            }
+
+            updateTelemetry();
+        }
+    }
+
+    private void execute(Job job, ExecutorService executor, BlockingQueue<X34Core> cores, RuleListener listener)
+    {
+        ArrayList<X34Image> result = null;
+        X34Core core = cores.poll();
+        try {
+            if(core == null) throw new IOException("No worker core available");
+            result = core.retrieve(job.schema);
+        } catch (IOException e) {
+            log.logEvent(LogEventLevel.ERROR, "Retrieval operation for " + job.schema.query + " (" + job.schema.type + ") returned exception, see below.");
+            log.logEvent(e);
+        } catch (ValidationException e) {
+            log.logEvent(LogEventLevel.WARNING, e.getMessage());
+        } catch (RuntimeException e) {
+            log.logEvent(LogEventLevel.ERROR, "Retrieval operation for " + job.schema.query + " (" + job.schema.type + ") encountered an unexpected error, see below.");
+            log.logEvent(e);
+        } finally {
+            if(core != null) cores.add(core);
+        }
+
+        RuleTracker tracker = job.tracker;
+        boolean ruleDone = false;
+        ArrayList<X34Image> ruleResult = null;
+
+        synchronized (lock)
+        {
+            runningPerProcessor.put(job.schema.type, runningPerProcessor.get(job.schema.type) - 1);
+            runningIndexes.remove(getIndexKey(job.schema));
+            running.remove(job);
+            runningCount --;
+
+            tracker.results[job.position] = result == null ? new ArrayList<>() : result;
+            tracker.finished ++;
+            if(tracker.finished == tracker.results.length && !tracker.reported){
+                tracker.reported = true;
+                ruleDone = true;
+                ruleResult = tracker.collect();
+            }
+        }
+
+        // Start the next job before calling the listener, so that slow listeners do not hold up retrieval.
+        dispatch(executor, cores, listener);
+        if(ruleDone) notifyListener(listener, tracker.rule, ruleResult);
+
+        // The job is only counted as complete once its listener call has returned, so that run() does not return
+        // while a listener call is still in progress.
+        synchronized (lock)
+        {
+            completedJobs ++;
+            parent.processorCountProperty().set(completedJobs);
+            if(ruleDone) ruleCountProperty.set(ruleCountProperty.get() + 1);
+            lock.notifyAll();
+        }
+    }
+
+    // Gets a key identifying the index that a Schema's retrieval loads and saves. Queries are neutralized the same way
+    // that index IDs are, so that queries which differ only in separator characters map to the same index.
+    private static String getIndexKey(X34Schema schema) {
+        return X34Index.getNeutralSpacedID(schema.query) + "%" + schema.type;
+    }
+
+    // Must be called while holding the lock.
+    private void updateTelemetry()
+    {
+        LinkedHashSet<String> queries = new LinkedHashSet<>();
+        LinkedHashSet<String> processors = new LinkedHashSet<>();
+        for(Job j : running){
+            queries.add(j.schema.query);
+            processors.add(j.schema.type);
+        }
+
+        parent.currentQueryProperty().set(queries.isEmpty() ? null : String.join(", ", queries));
+        parent.currentProcessorProperty().set(processors.isEmpty() ? null : String.join(", ", processors));
+    }
+
+    private void notifyListener(RuleListener listener, X34Rule rule, ArrayList<X34Image> results)
+    {
+        try {
+            listener.ruleFinished(rule, results);
+        } catch (RuntimeException e) {
+            log.logEvent(LogEventLevel.ERROR, "Rule result listener encountered an unexpected error, see below.");
+            log.logEvent(e);
+        }
+    }
+
+    /**
+     * Sets the maximum number of {@link X34Schema Schemas} that will be run at the same time.
+     * Takes effect on the next call to {@link #run(List, RuleListener)}.
+     * @param max the maximum number of concurrent retrieval operations. Values less than 1 are treated as 1.
+     */
+    public void setMaxConcurrentRetrievals(int max) {
+        this.maxConcurrent = Math.max(1, max);
+    }
+
+    /**
+     * Sets the maximum number of {@link X34Schema Schemas} using the same processor that will be run at the same time.
+     * Takes effect on the next call to {@link #run(List, RuleListener)}.
+     * @param max the maximum number of concurrent retrieval operations per processor. Values less than 1 are treated as 1.
+     */
+    public void setMaxPerProcessor(int max) {
+        this.maxPerProcessor = Math.max(1, max);
+    }
+
+    public int getMaxConcurrentRetrievals() {
+        return maxConcurrent;
+    }
+
+    public int getMaxPerProcessor() {
+        return maxPerProcessor;
+    }
+
+    /**
+     * @return the number of {@link X34Rule Rules} that have finished during the current run, or {@link X34Core#INVALID_INT_PROPERTY_VALUE}
+     * if the scheduler is not running
+     */
+    public final SimpleIntegerProperty ruleCountProperty() {
+        return ruleCountProperty;
+    }
+
+    /**
+     * @return the number of valid {@link X34Rule Rules} in the current run, or {@link X34Core#INVALID_INT_PROPERTY_VALUE}
+     * if the scheduler is not running
+     */
+    public final SimpleIntegerProperty maxRuleCountProperty() {
+        return maxRuleCountProperty;
+    }
+
+    /**
+     * Releases this scheduler's logger. Call this once the scheduler is no longer needed; it should not be used afterwards.
+     */
+    public void close() {
+        log.disassociate();
+    }
+
+    /**
+     * Receives the results of each {@link X34Rule} run by an {@link X34RetrievalScheduler}.
+     */
+    @FunctionalInterface
+    public interface RuleListener
+    {
+        /**
+         * Called once for each Rule when all of its {@link X34Schema Schemas} have finished, or when retrieval is cancelled
+         * with some of its Schemas finished.
+         * @param rule the Rule that has finished
+         * @param results the new {@link X34Image images} from all of the Rule's finished Schemas, in Schema order. May be zero-length.
+         */
+        void ruleFinished(X34Rule rule, ArrayList<X34Image> results);
+    }
+
+    // Collects the results of each Schema in a Rule as they finish.
+    private static class RuleTracker
+    {
+        final X34Rule rule;
+        final ArrayList<X34Image>[] results;
+        int finished;
+        boolean reported;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        RuleTracker(X34Rule rule, int schemaCount)
+        {
+            this.rule = rule;
+            this.results = new ArrayList[schemaCount];
+            this.finished = 0;
+            this.reported = false;
+        }
+
+        ArrayList<X34Image> collect()
+        {
+            ArrayList<X34Image> merged = new ArrayList<>();
+            for(ArrayList<X34Image> r : results) if(r != null) merged.addAll(r);
+            return merged;
+        }
+    }
+
+    private static class Job
+    {
+        final RuleTracker tracker;
+        final X34Schema schema;
+        final int position;
+        Future<?> future;
+
+        Job(RuleTracker tracker, X34Schema schema, int position)
+        {
+            this.tracker = tracker;
+            this.schema = schema;
+            this.position = position;
+        }
+    }
+}
@@ -35,6 +35,11 @@ public class DVProcessor extends X34RetrievalProcessor
     private final String AUTH_UUID_PREFIX   = "&mature_content=true&limit=24&access_token=";
     private final String AUTH_TOKEN_REQUEST = "https://www.deviantart.com/oauth2/token?grant_type=client_credentials&client_id=" + AUTH_CLIENT_ID + "&client_secret=" + AUTH_CLIENT_SECRET;
 
+    // Request rate limits for the API host, in requests per second
+    private final String API_HOST           = "www.deviantart.com";
+    private final double API_INITIAL_RATE   = 0.5;
+    private final double API_MAX_RATE       = 2.0;
+
     // legacy variables for old routine
     private final String IMG_LINK_START     = "data-super-full-img=\"";
     private final String IMG_LINK_END       = "\" data-super-full-width";
@@ -110,6 +115,10 @@ public class DVProcessor extends X34RetrievalProcessor
         log.logEvent(LogEventLevel.DEBUG, "Processor ID: " + this.getID());
         log.logEvent(LogEventLevel.DEBUG, "Telemetry enabled: " + HAS_TELEMETRY);
 
+        // The API is stricter than most hosts, so start its rate limiter off at one request every 2s, and let it speed
+        // up from there if the server allows it. Has no effect if the limiter has already been created.
+        HostRateLimiter.forHost(API_HOST, API_INITIAL_RATE, API_MAX_RATE);
+
         // Request access token from DeviantArt API backend
         log.logEvent("Authenticating with API backend. Client ID: " + AUTH_CLIENT_ID);
         String token = getAuthToken();
@@ -122,23 +131,31 @@ public class DVProcessor extends X34RetrievalProcessor
         }
 
         ARKJsonObject json;
-        String URLBase = AUTH_CLIENT_PATH + schema.query.replace(' ', '+').toLowerCase() + AUTH_UUID_PREFIX + token + PAGESRV_PID_PREFIX;
+        // Must be a final one-element array for access from the page pipeline, since it changes if the token is refreshed
+        final String[] URLBase = {AUTH_CLIENT_PATH + schema.query.replace(' ', '+').toLowerCase() + AUTH_UUID_PREFIX + token + PAGESRV_PID_PREFIX};
         ArrayList<X34Image> images = new ArrayList<>();
 
         int currentOffset = 0;
         int failed = 0;
         final int PAGE_OFFSET_DELTA = 20;
+        final int PAGE_SIZE = 24;
         int total = 0;
         boolean rtlTriggered = false;
 
         if(maxPageProperty != null) maxPageProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
         if(errorProperty != null) errorProperty.set(null);
 
+        // Pages are fetched one ahead of the one currently being parsed, assuming that the next offset will be one full
+        // page (24 results) on from the current one. If it isn't, the page at the actual offset is fetched on demand.
+        PagePipeline<ARKJsonObject> pipeline = new PagePipeline<>(o -> URLBase[0] + o,
+                url -> ProcessorUtils.tryDataTransfer(url, 1, ARKJsonParser::loadFromURL), PAGE_SIZE, 1);
+
         // Loop until we run out of pages
         do{
             if(pageProperty != null) pageProperty.set(currentOffset);
             if(cancelledProperty != null && cancelledProperty.get()){
                 log.logEvent(LogEventLevel.WARNING, "Retrieval process cancellation request received, stopping.");
+                pipeline.close();
                 return null;
             }
 
@@ -152,7 +169,7 @@ public class DVProcessor extends X34RetrievalProcessor
 
             // Get JSON data from URL. Skip page if the read fails.
             try{
-                json = ARKJsonParser.loadFromURL(URLBase + currentOffset);
+                json = pipeline.get(currentOffset);
             }catch (FileNotFoundException e){
                 // Force the JSON data to null, forcing the end-of-page handler, since the server has told us that this is the case.
                 json = null;
@@ -169,21 +186,18 @@ public class DVProcessor extends X34RetrievalProcessor
                             // If we couldn't get an API access token, return with no images
                             log.logEvent(LogEventLevel.ERROR, "Error 04010: API authentication request failed.");
                             if(errorProperty != null) errorProperty.set("API auth request failed");
+                            pipeline.close();
                             return null;
                         }
-                        // Refresh base URL with the new token and keep going.
-                        URLBase = AUTH_CLIENT_PATH + schema.query.replace(' ', '+').toLowerCase() + AUTH_UUID_PREFIX + newToken + PAGESRV_PID_PREFIX;
+                        // Refresh base URL with the new token and keep going. Any prefetched pages used the old token, so drop them.
+                        URLBase[0] = AUTH_CLIENT_PATH + schema.query.replace(' ', '+').toLowerCase() + AUTH_UUID_PREFIX + newToken + PAGESRV_PID_PREFIX;
+                        pipeline.invalidate();
                         log.logEvent("New authentication token received: " + newToken);
                         continue;
                     case 403:
                     case 429:
-                        // The server has triggered its rate-limiting, wait for about 10s to let it catch up.
-                        log.logEvent(LogEventLevel.WARNING, "Adaptive API rate-limiting triggered. Waiting for 10s.");
-                        try{Thread.sleep(10000);}catch(InterruptedException e1){continue;}
-                        log.logEvent("Resuming retrieval.");
-                        // If the rate-limit detection has been tripped twice in a row, assume that we have run across some kind of severe limit, log it as an error.
-                        if(rtlTriggered) failed++;
-                        else rtlTriggered = true;
+                        if(ProcessorUtils.handleRateLimit(pipeline, HostRateLimiter.forURL(URLBase[0]), log, rtlTriggered)) failed++;
+                        rtlTriggered = true;
                         continue;
                     default:
                         // Otherwise, the error is probably something we can't deal with, error out.
@@ -265,10 +279,10 @@ public class DVProcessor extends X34RetrievalProcessor
             // Reset the rate-limit detection flag since we got a page successfully.
             rtlTriggered = false;
 
-            // Sleep for 2s to avoid server overload.
-            try{Thread.sleep(2000);}catch(InterruptedException ignored){}
         }while (currentOffset != -1);
 
+        pipeline.close();
+
         log.logEvent("Page pull complete.");
         log.logEvent("Checking " + images.size() + " images against index...");
 
@@ -277,7 +291,7 @@ public class DVProcessor extends X34RetrievalProcessor
         ArrayList<X34Image> newImages = ProcessorUtils.checkIndex(index, images);
 
         for(X34Image i : newImages){
-            log.logEvent("No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
+            log.logEvent(() -> "No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
         }
 
         log.logEvent("Index check complete. " + newImages.size() + " image" + (newImages.size() == 1 ? "" : "s") + " found.");
@@ -416,7 +430,7 @@ public class DVProcessor extends X34RetrievalProcessor
         ArrayList<X34Image> newImages = ProcessorUtils.checkIndex(index, images);
 
         for(X34Image i : newImages){
-            log.logEvent("No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
+            log.logEvent(() -> "No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
         }
 
         log.logEvent("Index check complete. " + newImages.size() + " image" + (newImages.size() == 1 ? "" : "s") + " found.");
@@ -0,0 +1,169 @@
+package X34.Processors;
+
+import com.sun.istack.internal.NotNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the rate of requests made to a single remote host using a token bucket. One limiter exists per host, and is
+ * shared by every thread in the JVM, so that concurrent processors and page prefetches cannot exceed the rate between
+ * them.
+ * The rate adapts to the server's behavior: every rate-limit response (HTTP 429 or 403) halves the rate and blocks the
+ * host for a cooldown period that doubles with each consecutive rate-limit response, and every successful request
+ * increases the rate slightly, up to the limiter's maximum.
+ */
+class HostRateLimiter
+{
+    /**
+     * The default starting request rate for newly seen hosts, in requests per second.
+     */
+    static final double DEFAULT_RATE = 2.0;
+
+    /**
+     * The default maximum request rate for newly seen hosts, in requests per second.
+     */
+    static final double DEFAULT_MAX_RATE = 8.0;
+
+    // The lowest rate that a limiter will adapt down to, in requests per second.
+    private static final double MIN_RATE = 0.1;
+
+    // The maximum number of requests that can be made at once after a host has been idle.
+    private static final double BURST = 4.0;
+
+    // Rate increase per successful request, in requests per second, and rate multiplier per rate-limit response.
+    private static final double INCREASE_STEP = 0.05;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    // Cooldown after the first rate-limit response in a row, and the maximum cooldown, in milliseconds.
+    private static final long BASE_COOLDOWN = 2000;
+    private static final long MAX_COOLDOWN = 30000;
+
+    private static final ConcurrentHashMap<String, HostRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final String host;
+    private double rate;
+    private double maxRate;
+    private double tokens;
+    private long lastRefill;
+    private long blockedUntil;
+    private long cooldown;
+
+    private HostRateLimiter(String host, double rate, double maxRate)
+    {
+        this.host = host;
+        this.maxRate = Math.max(MIN_RATE, maxRate);
+        this.rate = Math.max(MIN_RATE, Math.min(rate, this.maxRate));
+        this.tokens = Math.min(BURST, Math.max(1.0, this.rate));
+        this.lastRefill = System.currentTimeMillis();
+        this.blockedUntil = 0;
+        this.cooldown = 0;
+    }
+
+    /**
+     * Gets the limiter for the specified host, creating it with the default rates if it does not exist.
+     * @param host the host name to get the limiter for. Case-insensitive.
+     * @return the shared limiter for the host
+     */
+    static HostRateLimiter forHost(@NotNull String host) {
+        return forHost(host, DEFAULT_RATE, DEFAULT_MAX_RATE);
+    }
+
+    /**
+     * Gets the limiter for the specified host, creating it with the specified rates if it does not exist. If the limiter
+     * already exists, its rates are left as they are.
+     * @param host the host name to get the limiter for. Case-insensitive.
+     * @param rate the starting request rate, in requests per second
+     * @param maxRate the maximum request rate, in requests per second
+     * @return the shared limiter for the host
+     */
+    static HostRateLimiter forHost(@NotNull String host, double rate, double maxRate) {
+        return limiters.computeIfAbsent(host.toLowerCase(), h -> new HostRateLimiter(h, rate, maxRate));
+    }
+
+    /**
+     * Gets the limiter for the host of the specified URL. URLs that cannot be parsed share a single limiter.
+     * @param url the URL to get the limiter for
+     * @return the shared limiter for the URL's host
+     */
+    static HostRateLimiter forURL(@NotNull String url)
+    {
+        try {
+            return forHost(new URL(url).getHost());
+        } catch (MalformedURLException e) {
+            return forHost("");
+        }
+    }
+
+    /**
+     * Waits until a request to this limiter's host is allowed, and takes a token for it. Requests are allowed in the
+     * order that they call this method.
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException
+    {
+        long wait;
+        synchronized (this)
+        {
+            long now = System.currentTimeMillis();
+            refill(now);
+
+            // Tokens can go negative, which reserves a future token for this request so that waiting threads are
+            // spaced out rather than all waking at the same time.
+            tokens -= 1.0;
+            long tokenWait = tokens >= 0 ? 0 : (long)Math.ceil((-tokens / rate) * 1000.0);
+            wait = Math.max(tokenWait, blockedUntil - now);
+        }
+
+        if(wait > 0) Thread.sleep(wait);
+    }
+
+    /**
+     * Reports a successful request to this limiter's host, slowly increasing the allowed request rate.
+     */
+    synchronized void onSuccess()
+    {
+        refill(System.currentTimeMillis());
+        rate = Math.min(maxRate, rate + INCREASE_STEP);
+        cooldown = 0;
+    }
+
+    /**
+     * Reports a rate-limit response from this limiter's host. Halves the allowed request rate, and blocks all requests
+     * to the host until the current cooldown period has elapsed.
+     */
+    synchronized void onRateLimited()
+    {
+        long now = System.currentTimeMillis();
+        refill(now);
+        rate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+        cooldown = cooldown == 0 ? BASE_COOLDOWN : Math.min(MAX_COOLDOWN, cooldown * 2);
+        blockedUntil = Math.max(blockedUntil, now + cooldown);
+
+        // Don't let tokens that built up before the response was received turn into a burst once the cooldown ends.
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * @return the currently allowed request rate, in requests per second
+     */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return the host that this limiter applies to
+     */
+    String getHost() {
+        return host;
+    }
+
+    private void refill(long now)
+    {
+        if(now > lastRefill){
+            tokens = Math.min(BURST, tokens + ((now - lastRefill) / 1000.0) * rate);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package X34.Processors;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+/**
+ * Fetches and parses pages of repository data ahead of the processor that is using them, so that the network is not
+ * idle while a page is being processed, and vice versa.
+ * Pages are identified by an {@code int} key (a page number or result offset, depending on the repository). Whenever
+ * a page is requested through {@link #get(int)}, the next {@code depth} pages (at intervals of {@code stride}) are
+ * fetched in the background, and are returned immediately if they are requested later on. Pages that were not prefetched
+ * (for example, if the processor skips to a key that was not predicted) are fetched on demand.
+ * Error handling (rate-limiting, retry counts, end-of-pages detection) is left up to the processor. Exceptions thrown
+ * while loading a page are rethrown from {@link #get(int)} when that page is requested.
+ * @param <T> the type that each page is parsed into by the {@link PageLoader}
+ */
+class PagePipeline<T> implements AutoCloseable
+{
+    /**
+     * The default number of pages to fetch ahead of the page currently being processed.
+     */
+    static final int DEFAULT_PREFETCH_DEPTH = 2;
+
+    // How long idle prefetch threads are kept alive, in milliseconds.
+    private static final long THREAD_KEEPALIVE = 10000;
+
+    private final IntFunction<String> urlBuilder;
+    private final PageLoader<T> loader;
+    private final int stride;
+    private final int depth;
+
+    private final HashMap<Integer, Future<T>> pages;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new pipeline.
+     * @param urlBuilder builds the URL for the page with a given key. Called when the page is fetched, not when it is
+     *                   requested, so changes in the builder's state (such as a refreshed access token) apply to any
+     *                   pages fetched afterwards. Call {@link #invalidate()} to discard any pages fetched before the change.
+     * @param loader fetches and parses the data at a page URL. Called from background threads.
+     * @param stride the difference in key between consecutive pages
+     * @param depth the maximum number of pages to fetch ahead of the current page. If this is 0, no pages are prefetched.
+     */
+    PagePipeline(@NotNull IntFunction<String> urlBuilder, @NotNull PageLoader<T> loader, int stride, int depth)
+    {
+        this.urlBuilder = urlBuilder;
+        this.loader = loader;
+        this.stride = stride;
+        this.depth = Math.max(0, depth);
+        this.pages = new HashMap<>();
+
+        // Idle threads time out, so a pipeline that is never closed (for example, if its processor throws) does not
+        // hold on to its threads indefinitely.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(this.depth + 1, this.depth + 1, THREAD_KEEPALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "X34 Page Prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the page with the specified key, waiting for it to finish loading if necessary, and starts prefetching the
+     * pages after it. Any prefetched pages with keys before the requested key are discarded.
+     * @param key the key of the page to get
+     * @return the result of loading the page
+     * @throws IOException if the page could not be loaded, or if the calling thread was interrupted while waiting for it
+     */
+    T get(int key) throws IOException
+    {
+        Future<T> page;
+        synchronized (pages)
+        {
+            page = pages.remove(key);
+            if(page == null) page = submit(key);
+
+            // Pages behind the requested page will not be asked for again.
+            Iterator<Map.Entry<Integer, Future<T>>> it = pages.entrySet().iterator();
+            while(it.hasNext()){
+                Map.Entry<Integer, Future<T>> e = it.next();
+                if(stride > 0 ? e.getKey() < key : e.getKey() > key){
+                    e.getValue().cancel(true);
+                    it.remove();
+                }
+            }
+
+            for(int i = 1; i <= depth; i++){
+                int next = key + (stride * i);
+                if(!pages.containsKey(next)) pages.put(next, submit(next));
+            }
+        }
+
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            page.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for page " + key);
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Page " + key + " was cancelled");
+        } catch (ExecutionException e) {
+            // Rethrow the loader's own exception, so that callers can inspect it as though they had loaded the page themselves.
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) throw (IOException)cause;
+            else if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            else if(cause instanceof Error) throw (Error)cause;
+            else throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Discards all prefetched pages, cancelling any that are still loading. Should be called if the processor needs to
+     * retry a page after a delay (for example, after the server triggers its rate-limiting), since any pages fetched in
+     * the meantime are likely to have failed the same way.
+     */
+    void invalidate()
+    {
+        synchronized (pages) {
+            for(Future<T> f : pages.values()) f.cancel(true);
+            pages.clear();
+        }
+    }
+
+    /**
+     * Discards all prefetched pages and stops all background threads. The pipeline cannot be used after this is called.
+     */
+    @Override
+    public void close()
+    {
+        invalidate();
+        executor.shutdownNow();
+    }
+
+    private Future<T> submit(int key) {
+        return executor.submit(() -> loader.load(urlBuilder.apply(key)));
+    }
+
+    /**
+     * Fetches and parses the data at a page URL.
+     * @param <T> the type that pages are parsed into
+     */
+    @FunctionalInterface
+    interface PageLoader<T>
+    {
+        /**
+         * @param url the URL of the page to load
+         * @return the parsed page
+         * @throws IOException if the page could not be retrieved
+         */
+        T load(String url) throws IOException;
+    }
+}
@@ -0,0 +1,120 @@
+package X34.Processors;
+
+import com.sun.istack.internal.NotNull;
+
+/**
+ * Finds successive fields in a page of repository data (such as attribute values in an XML or HTML page) in a single
+ * forward pass. A field is the text between an occurrence of a start marker and the next occurrence of an end marker.
+ * Each call to {@link #next()} continues from the end of the previous field, so the page is only ever scanned once, and
+ * field positions are available as offsets into the page, without copying anything out of it until {@link #value()} is called.
+ */
+class PageScanner
+{
+    private final String page;
+    private final String startMark;
+    private final String endMark;
+
+    private int pos;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * Creates a new scanner positioned at the start of the page.
+     * @param page the page to scan
+     * @param startMark the marker that comes immediately before each field
+     * @param endMark the marker that comes immediately after each field
+     */
+    PageScanner(@NotNull String page, @NotNull String startMark, @NotNull String endMark)
+    {
+        this.page = page;
+        this.startMark = startMark;
+        this.endMark = endMark;
+        this.pos = 0;
+        this.valueStart = -1;
+        this.valueEnd = -1;
+    }
+
+    /**
+     * Advances to the next field in the page.
+     * @return true if another field was found, false if the end of the page was reached. A start marker with no matching
+     *         end marker counts as the end of the page.
+     */
+    boolean next()
+    {
+        if(pos < 0) return false;
+
+        int start = page.indexOf(startMark, pos);
+        int end = start < 0 ? -1 : page.indexOf(endMark, start + startMark.length());
+        if(end < 0){
+            pos = -1;
+            valueStart = -1;
+            valueEnd = -1;
+            return false;
+        }
+
+        valueStart = start + startMark.length();
+        valueEnd = end;
+        pos = end + endMark.length();
+        return true;
+    }
+
+    /**
+     * @return the offset in the page of the first character of the current field, or -1 if there is no current field
+     */
+    int valueStart() {
+        return valueStart;
+    }
+
+    /**
+     * @return the offset in the page just past the last character of the current field, or -1 if there is no current field
+     */
+    int valueEnd() {
+        return valueEnd;
+    }
+
+    /**
+     * @return the text of the current field, or null if there is no current field
+     */
+    String value() {
+        return valueStart < 0 ? null : page.substring(valueStart, valueEnd);
+    }
+
+    /**
+     * Finds a character within the current field.
+     * @param c the character to find
+     * @param from the page offset to start searching from
+     * @return the page offset of the first occurrence of the character at or after {@code from} and before the end of the
+     *         current field, or -1 if there is none
+     */
+    int indexInValue(char c, int from)
+    {
+        if(valueStart < 0) return -1;
+
+        // Searches are bounded by the field, so that a miss does not scan the rest of the page.
+        for(int i = Math.max(from, valueStart); i < valueEnd; i++) if(page.charAt(i) == c) return i;
+        return -1;
+    }
+
+    /**
+     * Finds a string within the current field.
+     * @param str the string to find
+     * @return the page offset of the first occurrence of the string that lies entirely within the current field, or -1 if there is none
+     */
+    int indexInValue(@NotNull String str)
+    {
+        if(valueStart < 0) return -1;
+
+        for(int i = valueStart; i + str.length() <= valueEnd; i++) if(page.startsWith(str, i)) return i;
+        return -1;
+    }
+
+    /**
+     * Gets part of the page by offset.
+     * @param start the offset of the first character, inclusive
+     * @param end the offset of the last character, exclusive
+     * @return the text between the offsets
+     */
+    String substring(int start, int end) {
+        return page.substring(start, end);
+    }
+}
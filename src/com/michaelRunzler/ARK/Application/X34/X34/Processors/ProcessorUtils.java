@@ -3,40 +3,93 @@ package X34.Processors;
 import X34.Core.X34Image;
 import X34.Core.X34Index;
 import com.sun.istack.internal.NotNull;
+import core.CoreUtil.AUNIL.LogEventLevel;
+import core.CoreUtil.AUNIL.XLoggerInterpreter;
 import core.CoreUtil.IOTools;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 
 class ProcessorUtils
 {
     /**
      * Cyclically tries getting data from a URL until it succeeds or exceeds the try count (default: 5).
+     * Each try waits for the {@link HostRateLimiter} of the URL's host, and reports its result back to it, so that the
+     * rate of requests to the host is reduced if the server responds with a rate-limit code (429 or 403).
      * @param url the URL to try getting data from
      * @param maxTries the maximum try count before giving up on transfer
      * @return the String representation of the data at the specified URL
      * @throws IOException if the try count is exceeded, this will be the exception thrown on the last try
      */
-    static String tryDataTransfer(String url, int maxTries) throws IOException
+    static String tryDataTransfer(String url, int maxTries) throws IOException {
+        return tryDataTransfer(url, maxTries, IOTools::getStringFromURL);
+    }
+
+    /**
+     * Cyclically tries loading data from a URL until it succeeds or exceeds the try count, subject to the rate limit of the
+     * URL's host. See {@link #tryDataTransfer(String, int)} for details.
+     * @param url the URL to try loading data from
+     * @param maxTries the maximum try count before giving up on transfer
+     * @param loader the method to use to fetch and parse the data at the URL
+     * @param <T> the type that the data is parsed into
+     * @return the result of loading the URL
+     * @throws IOException if the try count is exceeded, this will be the exception thrown on the last try. Also thrown
+     * if the calling thread is interrupted while waiting for the rate limiter.
+     */
+    static <T> T tryDataTransfer(String url, int maxTries, @NotNull PagePipeline.PageLoader<T> loader) throws IOException
     {
+        HostRateLimiter limiter = HostRateLimiter.forURL(url);
         int tries = 0;
         IOException thrown;
         do {
             try {
-                return IOTools.getStringFromURL(url);
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit on " + limiter.getHost());
+            }
+
+            try {
+                T result = loader.load(url);
+                limiter.onSuccess();
+                return result;
             } catch (IOException e) {
                 thrown = e;
                 tries ++;
+                short code = getHttpErrorCode(e);
+                if(code == 429 || code == 403) limiter.onRateLimited();
             }
         }while (tries < maxTries);
         throw thrown;
     }
 
+    /**
+     * Reacts to a page read that failed because the server triggered its rate-limiting. The host's rate limiter will already
+     * have slowed down in response, and will hold off the next request until the server has had time to catch up, so all
+     * that is left to do here is to log the new rate and drop any pages prefetched in the meantime, since they will have
+     * been rate-limited too.
+     * @param pipeline the page pipeline that the failed page was read from
+     * @param limiter the rate limiter for the host that the page was read from
+     * @param log the logger to report the new request rate to
+     * @param repeated whether the previous page read was also rate-limited, with no successful page read in between
+     * @return {@code true} if this page should be counted as a failure, {@code false} otherwise. Repeated rate-limit
+     * responses are counted, since they suggest that we have run across some kind of severe limit.
+     */
+    static boolean handleRateLimit(@NotNull PagePipeline<?> pipeline, @NotNull HostRateLimiter limiter, @NotNull XLoggerInterpreter log, boolean repeated)
+    {
+        log.logEvent(LogEventLevel.WARNING, "Adaptive API rate-limiting triggered. Reducing request rate to "
+                + String.format("%.2f", limiter.getRate()) + " requests/s.");
+        pipeline.invalidate();
+        return repeated;
+    }
+
     /**
      * Checks the provided list of {@link X34Image images} against the provided {@link X34Index index}, and returns a list
      * of images that do not exist in the index, if there are any. Comparison is done by checking the hash of each image
      * against the hashes of the entries in the index. If no match is found, the image is added to both the provided index
-     * and the list to be returned.
+     * and the list to be returned. Hash lookups are done through {@link X34Index#getEntryByHash(byte[])}, and run in constant
+     * time per image.
      * @param index the index to check images against. Images that do not exist in the index will be added to it. If this is
      *              null or contains no images, all provided images will be assumed to be new, and the result will be equal
      *              to the image list provided.
@@ -48,9 +101,7 @@ class ProcessorUtils
     {
         if(imageList == null || imageList.size() == 0) return new ArrayList<>();
         if(index == null || index.entries == null || index.entries.size() == 0){
-            if(index != null)
-                if(index.entries == null) index.entries = new ArrayList<>(imageList);
-                else index.entries.addAll(imageList);
+            if(index != null) for(X34Image x : imageList) index.addEntry(x);
             return new ArrayList<>(imageList);
         }
 
@@ -60,12 +111,15 @@ class ProcessorUtils
             // See if any images with an identical hash exist in the index already.
             int hashID = index.getEntryByHash(x.hash);
             if(hashID > -1){
-                // If we found an existing image with a hash match, make sure its URL is current.
+                // If we found an existing image with a hash match, make sure its URL is current. URLs are compared by
+                // their string form, since URL.equals resolves hostnames, and reassigning an unchanged URL would mark the
+                // entry as modified in the index journal.
                 X34Image curr = index.entries.get(hashID);
-                if(!(curr.source == x.source) && x.hash != null) curr.source = x.source;
+                if(x.hash != null && !curr.source.toExternalForm().equals(x.source.toExternalForm())) curr.source = x.source;
             }else{
-                // If we didn't find a hash match, mark the image as new.
-                index.entries.add(x);
+                // If we didn't find a hash match, mark the image as new. Add it through the index so that its hash table
+                // stays current for the rest of the list.
+                index.addEntry(x);
                 newImages.add(x);
             }
         }
@@ -112,11 +112,16 @@ public class R34PProcessor extends X34RetrievalProcessor
         if(maxPageProperty != null) maxPageProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
         if(errorProperty != null) errorProperty.set(null);
 
+        // Pages are fetched ahead of the one currently being parsed.
+        PagePipeline<String> pipeline = new PagePipeline<>(p -> URLBase + p, url -> ProcessorUtils.tryDataTransfer(url, 5),
+                1, PagePipeline.DEFAULT_PREFETCH_DEPTH);
+
         // Loop until we run out of pages.
         do{
             if(pageProperty != null) pageProperty.set(currentPage);
             if(cancelledProperty != null && cancelledProperty.get()){
                 log.logEvent(LogEventLevel.WARNING, "Retrieval process cancellation request received, stopping.");
+                pipeline.close();
                 return null;
             }
 
@@ -130,7 +135,7 @@ public class R34PProcessor extends X34RetrievalProcessor
 
             // Get pagedata from URL. Skip page if the read fails.
             try{
-                page = ProcessorUtils.tryDataTransfer(URLBase + currentPage, 5);
+                page = pipeline.get(currentPage);
             }catch (FileNotFoundException e){
                 // Force the page to the page end marker, forcing the end-of-page handler, since the server has told us that this is the case.
                 page = END_OF_PAGES;
@@ -139,16 +144,8 @@ public class R34PProcessor extends X34RetrievalProcessor
                 switch (ProcessorUtils.getHttpErrorCode(e))
                 {
                     case 429:
-                        // The server has triggered its rate-limiting, wait for about 10s to let it catch up.
-                        log.logEvent(LogEventLevel.WARNING, "Adaptive API rate-limiting triggered. Waiting for 10s.");
-                        try{Thread.sleep(10000);}catch(InterruptedException e1){continue;}
-                        log.logEvent("Resuming retrieval.");
-                        // If the rate-limit detection has been tripped twice in a row, assume that we have run across some kind of severe limit, log it as an error.
-                        if(rtlTriggered){
-                            failed ++;
-                            rtlTriggered = false;
-                        }
-                        else rtlTriggered = true;
+                        if(ProcessorUtils.handleRateLimit(pipeline, HostRateLimiter.forURL(URLBase), log, rtlTriggered)) failed ++;
+                        rtlTriggered = !rtlTriggered;
                         continue;
                     default:
                         log.logEvent(LogEventLevel.ERROR, "Error 04000: Encountered I/O error during page read, skipping page. Exception details below.");
@@ -214,6 +211,8 @@ public class R34PProcessor extends X34RetrievalProcessor
             currentPage ++;
         }while (currentPage != -1);
 
+        pipeline.close();
+
         log.logEvent("Page pull complete.");
         log.logEvent("Checking " + images.size() + " images against index...");
 
@@ -222,7 +221,7 @@ public class R34PProcessor extends X34RetrievalProcessor
         ArrayList<X34Image> newImages = ProcessorUtils.checkIndex(index, images);
 
         for(X34Image i : newImages){
-            log.logEvent("No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
+            log.logEvent(() -> "No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
         }
 
         log.logEvent("Index check complete. " + newImages.size() + " image" + (newImages.size() == 1 ? "" : "s") + " found.");
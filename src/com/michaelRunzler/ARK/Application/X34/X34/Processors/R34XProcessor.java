@@ -4,7 +4,6 @@ import X34.Core.*;
 import core.CoreUtil.AUNIL.LogEventLevel;
 import core.CoreUtil.AUNIL.XLoggerInterpreter;
 import core.CoreUtil.ARKArrayUtil;
-import core.CoreUtil.IOTools;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -28,10 +27,10 @@ public class R34XProcessor extends X34RetrievalProcessor
     private final String PAGESRV_ROOT       = "https://rule34.xxx/index.php?page=dapi&s=post&q=index&limit=100&tags=";
     private final String PAGESRV_PID_PREFIX = "&pid=";
     private final String IMG_LINK_START     = "file_url=\"";
-    private final String IMG_LINK_END       = "\" parent_id=";
+    private final String IMG_LINK_END       = "\"";
     private final String LINK_HASH_START    = "/images/";
-    private final String LINK_HASH_SEPARATOR= "/";
-    private final String LINK_HASH_END      = ".";
+    private final char   LINK_HASH_SEPARATOR= '/';
+    private final char   LINK_HASH_END      = '.';
 
     private final ProcessorMetadataPacket metadata = new ProcessorMetadataPacket() {
         @Override
@@ -110,11 +109,16 @@ public class R34XProcessor extends X34RetrievalProcessor
         if(maxPageProperty != null) maxPageProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
         if(errorProperty != null) errorProperty.set(null);
 
+        // Pages are fetched ahead of the one currently being parsed.
+        PagePipeline<String> pipeline = new PagePipeline<>(p -> URLBase + (p - 1), url -> ProcessorUtils.tryDataTransfer(url, 5),
+                1, PagePipeline.DEFAULT_PREFETCH_DEPTH);
+
         // Loop until we run out of pages.
         do{
             if(pageProperty != null) pageProperty.set(currentPage);
             if(cancelledProperty != null && cancelledProperty.get()){
                 log.logEvent(LogEventLevel.WARNING, "Retrieval process cancellation request received, stopping.");
+                pipeline.close();
                 return null;
             }
 
@@ -128,7 +132,7 @@ public class R34XProcessor extends X34RetrievalProcessor
 
             // Get pagedata from URL. Skip page if the read fails.
             try{
-                page = ProcessorUtils.tryDataTransfer(URLBase + (currentPage - 1), 5);
+                page = pipeline.get(currentPage);
             }catch (FileNotFoundException e){
                 // Force the page to an empty XML tag, forcing the end-of-page handler, since the server has told us that this is the case.
                 page = "<>";
@@ -137,16 +141,8 @@ public class R34XProcessor extends X34RetrievalProcessor
                 switch (ProcessorUtils.getHttpErrorCode(e))
                 {
                     case 429:
-                        // The server has triggered its rate-limiting, wait for about 10s to let it catch up.
-                        log.logEvent(LogEventLevel.WARNING, "Adaptive API rate-limiting triggered. Waiting for 10s.");
-                        try{Thread.sleep(10000);}catch(InterruptedException e1){continue;}
-                        log.logEvent("Resuming retrieval.");
-                        // If the rate-limit detection has been tripped twice in a row, assume that we have run across some kind of severe limit, log it as an error.
-                        if(rtlTriggered){
-                            failed ++;
-                            rtlTriggered = false;
-                        }
-                        else rtlTriggered = true;
+                        if(ProcessorUtils.handleRateLimit(pipeline, HostRateLimiter.forURL(URLBase), log, rtlTriggered)) failed ++;
+                        rtlTriggered = !rtlTriggered;
                         continue;
                     default:
                         log.logEvent(LogEventLevel.ERROR, "Error 04000: Encountered I/O error during page read, skipping page. Exception details below.");
@@ -158,14 +154,17 @@ public class R34XProcessor extends X34RetrievalProcessor
             }
 
             // If the page length is 0, assume that the read failed and skip this page.
-            // If the page contains the end-of-pages marker, assume that we have hit the end of the valid page range
-            // or that the tag wasn't valid in the first place, and stop the loop.
             if(page.length() == 0){
                 log.logEvent(LogEventLevel.ERROR, "Error 04001: Pulled data with length of 0, assuming I/O error and skipping page.");
                 currentPage ++;
                 failed ++;
                 continue;
-            }else if(!page.contains(IMG_LINK_START)){
+            }
+
+            // Image links are pulled from the page in a single pass. If there isn't even one, assume that we have hit the
+            // end of the valid page range or that the tag wasn't valid in the first place, and stop the loop.
+            PageScanner links = new PageScanner(page, IMG_LINK_START, IMG_LINK_END);
+            if(!links.next()){
                 if(currentPage > 1) log.logEvent("End of valid entries.");
                 else{
                     log.logEvent(LogEventLevel.WARNING, "Tag appears to be invalid (reason: first page returned no-images warning)");
@@ -177,23 +176,19 @@ public class R34XProcessor extends X34RetrievalProcessor
 
             log.logEvent("Getting images from page " + currentPage);
 
-            // Find image section start point
-            int check = page.indexOf(IMG_LINK_START);
             int count = 0;
             // Loop until we run out of image links in the page.
-            while (check > -1)
-            {
+            do{
                 // Get image link
-                String link = IOTools.getFieldFromData(page, IMG_LINK_START, IMG_LINK_END, check);
+                String link = links.value();
 
-                // If one of the markers could not be found, assume that there are no more images and break the loop.
-                if(link == null){
-                    check = -1;
-                    continue;
-                }
-
-                // Get the hashcode of the current image link
-                byte[] hash = ARKArrayUtil.hexStringToBytes(IOTools.getFieldFromData(link, LINK_HASH_SEPARATOR, LINK_HASH_END, link.indexOf(LINK_HASH_START) + LINK_HASH_START.length()));
+                // Get the hashcode of the current image link. Links are of the form '.../images/<directory>/<md5>.<ext>',
+                // so the hash is located by offset within the link rather than copied out of it first.
+                byte[] hash = null;
+                int dir = links.indexInValue(LINK_HASH_START);
+                int hashStart = dir < 0 ? -1 : links.indexInValue(LINK_HASH_SEPARATOR, dir + LINK_HASH_START.length());
+                int hashEnd = hashStart < 0 ? -1 : links.indexInValue(LINK_HASH_END, hashStart + 1);
+                if(hashEnd > 0) hash = ARKArrayUtil.hexStringToBytes(links.substring(hashStart + 1, hashEnd));
 
                 try{
                     images.add(new X34Image(new URL(link), schema.query, hash, this.getID()));
@@ -201,16 +196,16 @@ public class R34XProcessor extends X34RetrievalProcessor
                     log.logEvent("Image link #" + (count + 1) + " is invalid, skipping.");
                 }
 
-                // Since this image was valid, update the start point and try for another image.
-                check = page.indexOf(IMG_LINK_START, check + IMG_LINK_START.length());
                 count ++;
-            }
+            }while (links.next());
 
             log.logEvent("Got " + count + " image" + (count == 1 ? "" : "s") + " from page " + currentPage);
 
             currentPage ++;
         }while (currentPage != -1);
 
+        pipeline.close();
+
         log.logEvent("Page pull complete.");
         log.logEvent("Checking " + images.size() + " images against index...");
 
@@ -219,7 +214,7 @@ public class R34XProcessor extends X34RetrievalProcessor
         ArrayList<X34Image> newImages = ProcessorUtils.checkIndex(index, images);
 
         for(X34Image i : newImages){
-            log.logEvent("No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
+            log.logEvent(() -> "No hash match found for image " + ARKArrayUtil.byteArrayToHexString(i.hash) + ", marked as new.");
         }
 
         log.logEvent("Index check complete. " + newImages.size() + " image" + (newImages.size() == 1 ? "" : "s") + " found.");
@@ -90,6 +90,7 @@ public class X34UIConfigManager extends ARKManagerBase
     // Mode-1
     private CheckBox pushToIndex;
     private CheckBox fastRetrieval;
+    private CheckBox parallelProcessors;
 
     // Mode-2
     private CheckBox logToFile;
@@ -223,6 +224,8 @@ public class X34UIConfigManager extends ARKManagerBase
         pushToIndex.setOnAction(e -> config.storeSetting(JFXConfigKeySet.KEY_PUSH_TO_INDEX, pushToIndex.isSelected()));
         fastRetrieval = new CheckBox("Fast Retrieval"); //todo implement in processors/core
         fastRetrieval.setOnAction(e -> config.storeSetting(JFXConfigKeySet.KEY_FAST_RETRIEVAL, fastRetrieval.isSelected()));
+        parallelProcessors = new CheckBox("Run processors in parallel");
+        parallelProcessors.setOnAction(e -> config.storeSetting(JFXConfigKeySet.KEY_PARALLEL_PROCESSORS, parallelProcessors.isSelected()));
 
         // Mode-2
 
@@ -301,6 +304,10 @@ public class X34UIConfigManager extends ARKManagerBase
             fastRetrieval.setSelected((Boolean)param.data);
             return null;
         }, fastRetrieval);
+        ret.addAction(JFXConfigKeySet.KEY_PARALLEL_PROCESSORS, param -> {
+            parallelProcessors.setSelected((Boolean)param.data);
+            return null;
+        }, parallelProcessors);
 
         logs.addAction(JFXConfigKeySet.KEY_DO_FILE_LOGGING, param -> {
             logToFile.setSelected((Boolean)param.data);
@@ -52,6 +52,9 @@ public class JFXConfigKeySet
     @Owner(X34Core.class)
     public static final String KEY_FAST_RETRIEVAL = "intelligent_page_scan";
 
+    @Owner(X34Core.class)
+    public static final String KEY_PARALLEL_PROCESSORS = "parallel_processor_retrieval";
+
     @Owner(JFXConfigKeySet.class)
     public static final long MAJOR_CONFIG_VERSION = 1000L;
 
@@ -4,6 +4,7 @@ import X34.Core.*;
 import X34.Core.IO.X34ConfigDelegator;
 import X34.Core.IO.X34Config;
 import X34.Core.IO.X34IndexDelegator;
+import X34.Core.IO.X34IndexView;
 import X34.Processors.ProcessorMetadataPacket;
 import X34.Processors.X34ProcessorRegistry;
 import X34.Processors.X34RetrievalProcessor;
@@ -46,7 +47,6 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import static X34.UI.JFX.Util.JFXConfigKeySet.*;
@@ -211,6 +211,7 @@ public class X34UI extends Application
 
     private X34Config config;
     private X34Core core;
+    private X34RetrievalScheduler scheduler;
     private XLoggerInterpreter log;
     private X34UIRuleManager ruleMgr;
     private X34UIFileManager fileMgr;
@@ -297,6 +298,7 @@ public class X34UI extends Application
         ruleCountProperty = new SimpleIntegerProperty();
 
         log = new XLoggerInterpreter("X34-JFX UI");
+        log.setAsyncLoggingEnableState(true);
         log.setImplicitEventLevel(LogEventLevel.DEBUG);
         //todo re-add when done with debugging: log.changeLoggerVerbosity(LogVerbosityLevel.STANDARD);
         
@@ -326,6 +328,7 @@ public class X34UI extends Application
         config = X34ConfigDelegator.getMainInstance();
         config.setTarget(configFile);
         core = new X34Core();
+        scheduler = new X34RetrievalScheduler(core);
 
         // Try loading config. If it fails, assume that there is no valid config file, and load defaults instead.
 
@@ -342,6 +345,7 @@ public class X34UI extends Application
         config.setDefaultSetting(KEY_DO_FILE_LOGGING, true);
         config.setDefaultSetting(KEY_PUSH_TO_INDEX, true);
         config.setDefaultSetting(KEY_FAST_RETRIEVAL, false);
+        config.setDefaultSetting(KEY_PARALLEL_PROCESSORS, false);
 
         try{
             // LOAD
@@ -575,8 +579,9 @@ public class X34UI extends Application
                 int totalSize = 0;
 
                 for(String s : result.sourceRule.getProcessorList()) {
-                    try {
-                        totalSize += X34IndexDelegator.getMainInstance().loadIndex(result.sourceRule.query, s).entries.size();
+                    // Only the entry count is needed here, so use a read-only view instead of loading the whole index.
+                    try(X34IndexView view = X34IndexDelegator.getMainInstance().getIndexView(result.sourceRule.query, s)) {
+                        totalSize += view.size();
                     } catch (IOException e) {
                         log.logEvent(LogEventLevel.DEBUG, "Could not locate index for size lookup. This is not an error!");
                         log.logEvent(LogEventLevel.DEBUG, "Exception details provided for completeness.");
@@ -1132,14 +1137,13 @@ public class X34UI extends Application
         });
     }
 
-    // Caching variable for rules slated for use in the MT retrieval routine
-    private ArrayList<X34Rule> ruleQueue;
     private void retrieve()
     {
         registeredRetrievalTasks.clear();
 
         // Set the index-push property, since it is not updated live from the config manager
         core.pushToIndexProperty().set((Boolean)config.getSettingOrDefault(KEY_PUSH_TO_INDEX, config.getDefaultSetting(KEY_PUSH_TO_INDEX)));
+        core.parallelRetrievalProperty().set((Boolean)config.getSettingOrDefault(KEY_PARALLEL_PROCESSORS, config.getDefaultSetting(KEY_PARALLEL_PROCESSORS)));
 
         switch (modeControl.getCurrentMode())
         {
@@ -1211,7 +1215,7 @@ public class X34UI extends Application
                 state.set(STATE_RUNNING);
 
                 // Filter by selection state
-                ruleQueue = new ArrayList<>();
+                ArrayList<X34Rule> ruleQueue = new ArrayList<>();
                 for(X34Rule r : autoRuleList.getItems()) if (ruleListValues.get(r).get()) ruleQueue.add(r);
 
                 if(ruleQueue.size() == 0){
@@ -1220,8 +1224,8 @@ public class X34UI extends Application
                 }
 
                 maxRuleCountProperty.set(ruleQueue.size());
-                final Iterator<X34Rule> iterator = ruleQueue.iterator();
-                runMTRetrieval(iterator);
+                ruleCountProperty.set(0);
+                runMTRetrieval(ruleQueue);
                 break;
         }
     }
@@ -1268,21 +1272,34 @@ public class X34UI extends Application
         downloadThread.start();
     }
 
-    // Chain-called from subthreads. Will chain until it runs out of rules.
-    private void runMTRetrieval(final Iterator<X34Rule> ruleSource)
+    // Runs all provided rules through the retrieval scheduler on a background task. Results are added to the results
+    // list as each rule finishes, rather than once the entire list is complete.
+    private void runMTRetrieval(final ArrayList<X34Rule> rules)
     {
-        // If the rule source has no more entries, we are done. Alert the user, set the final state, and return without chaining further.
-        if(!ruleSource.hasNext()){
+        Task<Void> autoRetrievalTask = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                scheduler.run(rules, (rule, result) -> Platform.runLater(() -> {
+                    if(result != null && result.size() != 0) results.getItems().add(new RetrievalResultCache(rule, result));
+                    ruleCountProperty.set(ruleCountProperty.get() + 1);
+                }));
+                return null;
+            }
+        };
+
+        // Once all rules are done, alert the user and set the final state. This is queued after any pending result
+        // updates from the scheduler, so the results list is complete by the time this is called.
+        autoRetrievalTask.setOnSucceeded(e ->{
+            registeredRetrievalTasks.remove(autoRetrievalTask);
+
             if(results.getItems() == null || results.getItems().size() == 0){
                 state.set(STATE_IDLE);
-                Platform.runLater(() -> notice.displayNotice("No results available from retrieval. Results list hidden.", UINotificationBannerControl.Severity.WARNING, 4000));
+                notice.displayNotice("No results available from retrieval. Results list hidden.", UINotificationBannerControl.Severity.WARNING, 4000);
             }else{
                 state.set(STATE_FINISHED);
                 boolean auto = (Boolean)config.getSettingOrDefault(KEY_AUTO_DOWNLOAD, config.getDefaultSetting(KEY_AUTO_DOWNLOAD));
-                Platform.runLater(() -> {
-                    notice.displayNotice("All retrieval processes complete. See results list for more information.", UINotificationBannerControl.Severity.INFO, 4000);
-                    if(auto) notice.displayNotice("Auto-downloading result(s)...", UINotificationBannerControl.Severity.INFO, 5000);
-                });
+                notice.displayNotice("All retrieval processes complete. See results list for more information.", UINotificationBannerControl.Severity.INFO, 4000);
+                if(auto) notice.displayNotice("Auto-downloading result(s)...", UINotificationBannerControl.Severity.INFO, 5000);
 
                 // Auto-download results if set to do so
                 if(auto){
@@ -1296,45 +1313,26 @@ public class X34UI extends Application
                 }
             }
 
-
             ruleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
             maxRuleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
-            return;
-        }
-
-        final X34Rule rule = ruleSource.next();
-
-        ruleCountProperty.set(ruleQueue.indexOf(rule) + 1);
-
-        Task<ArrayList<X34Image>> autoRetrievalTask = new Task<ArrayList<X34Image>>() {
-            @Override
-            protected ArrayList<X34Image> call() throws Exception {
-                return core.retrieve(rule);
-            }
-        };
-
-        // If the task succeeds, store the results and chain to the next task.
-        autoRetrievalTask.setOnSucceeded(e ->{
-            ArrayList<X34Image> result = autoRetrievalTask.getValue();
-
-            if(result != null && result.size() != 0) results.getItems().addAll(new RetrievalResultCache(rule, result));
-            registeredRetrievalTasks.remove(autoRetrievalTask);
-            runMTRetrieval(ruleSource);
         });
 
-        // If the task fails, it's due to a validation problem. Alert the user, and chain to the next task.
         autoRetrievalTask.setOnFailed(e ->{
             Throwable e1 = autoRetrievalTask.getException();
-            Platform.runLater(() -> notice.displayNotice("Encountered internal validation error, see log for details.", UINotificationBannerControl.Severity.WARNING, 2500));
-            log.logEvent(LogEventLevel.DEBUG, "Rule/schema validation error, see below for details.");
+            notice.displayNotice("Encountered internal retrieval error, see log for details.", UINotificationBannerControl.Severity.WARNING, 2500);
+            log.logEvent(LogEventLevel.DEBUG, "Retrieval scheduler error, see below for details.");
             if(e1 instanceof Exception) log.logEvent((Exception)e1);
             registeredRetrievalTasks.remove(autoRetrievalTask);
-            runMTRetrieval(ruleSource);
+            ruleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
+            maxRuleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
+            state.set(results.getItems() == null || results.getItems().size() == 0 ? STATE_IDLE : STATE_FINISHED);
         });
 
-        // If the task is cancelled, do not chain to the next process and just flag results if any.
+        // If the task is cancelled, the scheduler will stop and report any partial results. Just flag results if any.
         autoRetrievalTask.setOnCancelled(e ->{
             notice.displayNotice("Retrieval cancelled.", UINotificationBannerControl.Severity.INFO, 2500);
+            ruleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
+            maxRuleCountProperty.set(X34Core.INVALID_INT_PROPERTY_VALUE);
 
             if(results.getItems() == null || results.getItems().size() == 0){
                 state.set(STATE_IDLE);
@@ -1365,6 +1363,9 @@ public class X34UI extends Application
             if(!new ARKInterfaceDialogYN("Warning", "Unable to save configuration changes! Exit anyway?", "Exit", "Cancel").display())
                 return;
         }
+
+        scheduler.close();
+        core.close();
         System.exit(0);
     }
 
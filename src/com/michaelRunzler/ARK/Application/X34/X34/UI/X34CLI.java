@@ -8,8 +8,9 @@ import core.CoreUtil.CMLUtils;
 import core.system.ARKAppCompat;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class X34CLI
 {
@@ -96,10 +97,13 @@ public class X34CLI
         // delegate to submethod based on whether batch job keys are in place
         if(CMLUtils.getArgument(args, "tag") == null && CMLUtils.getArgument(args, "repo") == null) CLI();
         else{
+            // Batch jobs are non-interactive, so console output does not need to stay in step with prompts.
+            log.setAsyncLoggingEnableState(true);
             X34Rule rule = new X34Rule(CMLUtils.getArgument(args, "tag"), null, CMLUtils.getArgument(args, "repo"));
             batch(args, rule);
         }
 
+        xCore.close();
         log.disassociate();
         System.exit(0);
     }
@@ -122,18 +126,6 @@ public class X34CLI
             return;
         }
 
-        // compute download root directory location
-        String temp = CMLUtils.getArgument(args, "dest");
-        File root;
-        if(temp == null || temp.isEmpty()) root = ARKAppCompat.getOSSpecificDesktopRoot();
-        else if(temp.startsWith("@")) root = new File(ARKAppCompat.getOSSpecificDesktopRoot().getAbsolutePath() + temp.replace('@', '\\'));
-        else root = new File(temp);
-
-        // set directory creation and overwrite flags
-        boolean overwrite = CMLUtils.getArgument(args, "overwrite") != null;
-        boolean mkdirs = CMLUtils.getArgument(args, "mkdirs") != null;
-        boolean confirmDownload = CMLUtils.getArgument(args, "confirmdl") != null;
-
         //
         // init core and initiate retrieval
         //
@@ -152,18 +144,76 @@ public class X34CLI
             log.logEvent(e);
         }
 
-        if(retrieved != null && retrieved.size() > 0)
+        download(args, retrieved);
+    }
+
+    /**
+     * Runs the auto-retrieval version of {@link #batch(String[], X34Rule)} for a list of rules. Rules are run concurrently
+     * by an {@link X34RetrievalScheduler}, and each rule's results are downloaded as soon as it finishes.
+     * @param args the argument list to pull download settings from
+     * @param rules the list of rules to retrieve
+     */
+    private static void auto(String[] args, X34Rule[] rules)
+    {
+        X34RetrievalScheduler scheduler = new X34RetrievalScheduler(xCore);
+        LinkedBlockingQueue<Map.Entry<X34Rule, ArrayList<X34Image>>> finished = new LinkedBlockingQueue<>();
+
+        System.out.println("Running " + rules.length + " retrieval process" + (rules.length == 1 ? "" : "es") + "...");
+
+        // Run the scheduler in the background, and download results on this thread as they come in, so that downloads
+        // (and any confirmation prompts) do not hold up the retrieval workers.
+        Thread retrieval = new Thread(() -> scheduler.run(Arrays.asList(rules),
+                (rule, result) -> finished.add(new AbstractMap.SimpleEntry<>(rule, result))), "X34 CLI Retrieval");
+        retrieval.setDaemon(true);
+        retrieval.start();
+
+        int count = 0;
+        while(retrieval.isAlive() || !finished.isEmpty())
         {
-            if(confirmDownload) System.out.println("Download " + retrieved.size() + " new image" + (retrieved.size() == 1 ? "" : "s") + "?");
-
-            if(!confirmDownload || getBooleanFromScanner(new Scanner(System.in), System.out, "y", "n", "Enter y for yes or n for no.")) {
-                try {
-                    xCore.writeImagesToFile(retrieved, root, overwrite, mkdirs);
-                    log.logEvent("Download complete.");
-                } catch (IOException e) {
-                    log.logEvent("Image download failed with the following exception:");
-                    log.logEvent(e);
-                }
+            Map.Entry<X34Rule, ArrayList<X34Image>> result;
+            try {
+                result = finished.poll(250, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                xCore.cancelRetrieval();
+                break;
+            }
+
+            if(result == null) continue;
+            count ++;
+            System.out.println("Retrieval process " + count + " of " + rules.length + " (" + result.getKey().query + ") complete.");
+            download(args, result.getValue());
+        }
+
+        scheduler.close();
+    }
+
+    // Downloads a set of retrieved images according to the destination, overwrite, and confirmation arguments in the
+    // provided argument list.
+    private static void download(String[] args, ArrayList<X34Image> retrieved)
+    {
+        if(retrieved == null || retrieved.size() == 0) return;
+
+        // compute download root directory location
+        String temp = CMLUtils.getArgument(args, "dest");
+        File root;
+        if(temp == null || temp.isEmpty()) root = ARKAppCompat.getOSSpecificDesktopRoot();
+        else if(temp.startsWith("@")) root = new File(ARKAppCompat.getOSSpecificDesktopRoot().getAbsolutePath() + temp.replace('@', '\\'));
+        else root = new File(temp);
+
+        // set directory creation and overwrite flags
+        boolean overwrite = CMLUtils.getArgument(args, "overwrite") != null;
+        boolean mkdirs = CMLUtils.getArgument(args, "mkdirs") != null;
+        boolean confirmDownload = CMLUtils.getArgument(args, "confirmdl") != null;
+
+        if(confirmDownload) System.out.println("Download " + retrieved.size() + " new image" + (retrieved.size() == 1 ? "" : "s") + "?");
+
+        if(!confirmDownload || getBooleanFromScanner(new Scanner(System.in), System.out, "y", "n", "Enter y for yes or n for no.")) {
+            try {
+                xCore.writeImagesToFile(retrieved, root, overwrite, mkdirs);
+                log.logEvent("Download complete.");
+            } catch (IOException e) {
+                log.logEvent("Image download failed with the following exception:");
+                log.logEvent(e);
             }
         }
     }
@@ -459,10 +509,7 @@ public class X34CLI
                 new CLIMenuOption("Retrieve (automatic)", ()->{
                     X34Rule[] autoRules = getAutoModeSchemas(autoConfig);
                     if(autoRules != null && autoRules.length > 0){
-                        for(int i = 0; i < autoRules.length; i++){
-                            System.out.println("Running retrieval process " + (i + 1) + " of " + autoRules.length + "...");
-                            batch(getGeneralSettingsArgumentEquivalent(generalConfig), autoRules[i]);
-                        }
+                        auto(getGeneralSettingsArgumentEquivalent(generalConfig), autoRules);
                     }else{
                         System.out.println("No rules available from automatic rule list!");
                         System.out.println("Add some in the auto-retrieval settings menu!");
@@ -481,6 +528,7 @@ public class X34CLI
                 }),
 
                 new CLIMenuOption("Exit Program", ()->{
+                    xCore.close();
                     log.disassociate();
                     System.exit(0);
                     return false;
@@ -3,7 +3,6 @@ package core.CoreUtil;
 import com.sun.istack.internal.NotNull;
 
 import java.lang.reflect.Array;
-import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,6 +13,22 @@ import java.util.Deque;
  */
 public class ARKArrayUtil
 {
+    // Lookup tables for hex encoding and decoding. HEX_VALUES maps ASCII characters to their digit value, or -1.
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+    // Flipping the top bit of a byte is the same as adding 128 to it (mod 256), so this applies the hash byte bias to
+    // all 8 bytes of a long at once.
+    private static final long LONG_BIAS = 0x8080808080808080L;
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte)-1);
+        for(int i = 0; i < 10; i++) HEX_VALUES['0' + i] = (byte)i;
+        for(int i = 0; i < 6; i++){
+            HEX_VALUES['a' + i] = (byte)(10 + i);
+            HEX_VALUES['A' + i] = (byte)(10 + i);
+        }
+    }
+
     //
     // Type conversion methods
     //
@@ -213,32 +228,26 @@ public class ARKArrayUtil
     {
         if(input == null || input.length() == 0) return null;
 
-        String hex = input.trim().toLowerCase();
-
-        ByteBuffer buffer = ByteBuffer.allocate((int)Math.ceil(hex.length() / 2.0));
-        try{
-            boolean done = false;
-
-            if(hex.length() <= 2) {
-                buffer.putInt(Integer.parseInt(hex, 16));
-                done = true;
-            }
-
-            int last = 0;
-            int interval = 2;
-            while (!done){
-                buffer.put((byte)(Integer.parseInt(hex.substring(last, last + interval), 16) - 128));
-                last += interval;
-                if(last == hex.length()) done = true;
-                else if(last + interval > hex.length()){
-                    interval = 1;
-                }
-            }
-        } catch (NumberFormatException e){
-            return null;
+        // Equivalent to trim(), without copying the string.
+        int start = 0;
+        int end = input.length();
+        while(start < end && input.charAt(start) <= ' ') start ++;
+        while(end > start && input.charAt(end - 1) <= ' ') end --;
+        if(start == end) return null;
+
+        int length = end - start;
+        byte[] result = new byte[(length + 1) / 2];
+        int pos = start;
+        for(int i = 0; i < result.length; i++)
+        {
+            // An odd trailing character is read on its own, as if it had a leading zero.
+            int high = length - (pos - start) > 1 ? hexValue(input.charAt(pos ++)) : 0;
+            int low = hexValue(input.charAt(pos ++));
+            if(high < 0 || low < 0) return null;
+            result[i] = (byte)(((high << 4) | low) - 128);
         }
 
-        return buffer.array();
+        return result;
     }
 
     /**
@@ -255,11 +264,107 @@ public class ARKArrayUtil
     {
         if(input == null || input.length == 0) return null;
 
-        StringBuilder st = new StringBuilder();
-        for(byte b : input ){
-            st.append(String.format("%02x", b + 128));
+        char[] result = new char[input.length * 2];
+        for(int i = 0; i < input.length; i++){
+            int b = input[i] + 128;
+            result[i * 2] = HEX_DIGITS[b >> 4];
+            result[i * 2 + 1] = HEX_DIGITS[b & 0xF];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Packs a 16-byte hash (as produced by {@link #hexStringToBytes(String)}) into a pair of {@code long}s, for compact
+     * storage and fast comparison. The first 8 bytes form the high value and the last 8 form the low value, both in
+     * big-endian order. The bytes are stored as-is, so the result retains the same +128 bias as the array.
+     * @param hash the hash to pack. Must be exactly 16 bytes long.
+     * @return a two-element array containing the high and low values, in that order
+     * @throws IllegalArgumentException if the hash is null or is not 16 bytes long
+     * @see #longPairToBytes(long, long) for the reverse of this conversion
+     */
+    public static long[] bytesToLongPair(@NotNull byte[] hash)
+    {
+        if(hash == null || hash.length != 16) throw new IllegalArgumentException("Hash must be exactly 16 bytes long");
+
+        long high = 0;
+        long low = 0;
+        for(int i = 0; i < 8; i++){
+            high = (high << 8) | (hash[i] & 0xFF);
+            low = (low << 8) | (hash[i + 8] & 0xFF);
+        }
+        return new long[]{high, low};
+    }
+
+    /**
+     * Unpacks a pair of {@code long}s produced by {@link #bytesToLongPair(byte[])} back into a 16-byte hash.
+     * @param high the high value
+     * @param low the low value
+     * @return the 16-byte hash represented by the pair
+     */
+    public static byte[] longPairToBytes(long high, long low)
+    {
+        byte[] hash = new byte[16];
+        for(int i = 7; i >= 0; i--){
+            hash[i] = (byte)high;
+            hash[i + 8] = (byte)low;
+            high >>>= 8;
+            low >>>= 8;
+        }
+        return hash;
+    }
+
+    /**
+     * Converts a 32-character hex string directly into the {@code long} pair representation of its hash, without an
+     * intermediate byte array. Equivalent to {@code bytesToLongPair(hexStringToBytes(input))}.
+     * @param input the hex string to convert. Surrounding whitespace is ignored.
+     * @return a two-element array containing the high and low values, or null if the input is not a 32-character hex string
+     * @see #bytesToLongPair(byte[]) for information about the representation
+     */
+    public static long[] hexStringToLongPair(@NotNull String input)
+    {
+        if(input == null) return null;
+
+        String hex = input.length() == 32 ? input : input.trim();
+        if(hex.length() != 32) return null;
+
+        long high = 0;
+        long low = 0;
+        for(int i = 0; i < 16; i++){
+            int h = hexValue(hex.charAt(i));
+            int l = hexValue(hex.charAt(i + 16));
+            if(h < 0 || l < 0) return null;
+            high = (high << 4) | h;
+            low = (low << 4) | l;
         }
-        return st.toString();
+
+        // Applies the +128 bias to every byte at once, so that the result matches the stored byte values.
+        return new long[]{high ^ LONG_BIAS, low ^ LONG_BIAS};
+    }
+
+    /**
+     * Converts the {@code long} pair representation of a hash into its 32-character hex string, without an intermediate
+     * byte array. Equivalent to {@code byteArrayToHexString(longPairToBytes(high, low))}.
+     * @param high the high value
+     * @param low the low value
+     * @return the hex equivalent of the hash
+     */
+    public static String longPairToHexString(long high, long low)
+    {
+        char[] result = new char[32];
+        high ^= LONG_BIAS;
+        low ^= LONG_BIAS;
+        for(int i = 15; i >= 0; i--){
+            result[i] = HEX_DIGITS[(int)(high & 0xF)];
+            result[i + 16] = HEX_DIGITS[(int)(low & 0xF)];
+            high >>>= 4;
+            low >>>= 4;
+        }
+        return new String(result);
+    }
+
+    // Gets the value of a single hex digit in either case, or -1 if the character is not a hex digit.
+    private static int hexValue(char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
     }
 
     /**
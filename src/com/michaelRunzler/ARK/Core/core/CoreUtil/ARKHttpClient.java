@@ -0,0 +1,245 @@
+package core.CoreUtil;
+
+import com.sun.istack.internal.NotNull;
+import com.sun.istack.internal.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Opens HTTP connections with a single, shared configuration (timeouts, user agent, and proxy), and handles response
+ * decoding and connection reuse for them. All network methods in {@link IOTools} go through this class.
+ * Connections are pooled by the JVM's HTTP keep-alive cache: once a response body has been read to the end and its stream
+ * closed, the underlying socket (and its TLS session) is kept open and reused for the next request to the same host.
+ * Connections must therefore never be {@link HttpURLConnection#disconnect() disconnected} after a normal response, and
+ * response streams must always be closed, even after an error; see {@link #getInputStream(HttpURLConnection)}.
+ */
+public class ARKHttpClient
+{
+    /**
+     * The default number of idle connections to keep open to each host, if the {@code http.maxConnections} system
+     * property has not already been set.
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 16;
+
+    // The maximum number of bytes that will be read off an error response so that its connection can be reused. Larger
+    // error responses simply close their connection.
+    private static final int MAX_DISCARD_LENGTH = 65536;
+
+    private static volatile int connectTimeout = IOTools.DEFAULT_CONNECT_TIMEOUT;
+    private static volatile int readTimeout = IOTools.DEFAULT_READ_TIMEOUT;
+    private static volatile String userAgent = null;
+    private static volatile Proxy proxy = null;
+
+    static {
+        // The keep-alive cache reads this once, when the first connection is made, so it must be set before then.
+        if(System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", "" + DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    /**
+     * Checks whether a URL can be opened by this client.
+     * @param url the URL to check
+     * @return true if the URL uses the HTTP or HTTPS protocol, false otherwise
+     */
+    public static boolean isHttp(@NotNull URL url) {
+        return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+    }
+
+    /**
+     * Opens a GET connection to the specified URL, accepting compressed responses, using the configured timeouts.
+     * @param url the URL to open
+     * @return the configured connection. The request has not been sent yet, so further request properties can be set on it.
+     * @throws IOException if the connection could not be opened
+     * @throws IllegalArgumentException if the URL is not an HTTP or HTTPS URL
+     */
+    public static HttpURLConnection open(@NotNull URL url) throws IOException {
+        return open(url, "GET", true, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Opens a connection to the specified URL, using the configured timeouts.
+     * @param url the URL to open
+     * @param method the HTTP request method to use
+     * @param compressed set this to true if the server may send a compressed response (decoded transparently by
+     *                   {@link #getInputStream(HttpURLConnection)}). Should be false for requests where the byte length
+     *                   or offsets of the response matter, such as range requests.
+     * @return the configured connection. The request has not been sent yet, so further request properties can be set on it.
+     * @throws IOException if the connection could not be opened
+     * @throws IllegalArgumentException if the URL is not an HTTP or HTTPS URL
+     */
+    public static HttpURLConnection open(@NotNull URL url, @NotNull String method, boolean compressed) throws IOException {
+        return open(url, method, compressed, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Opens a connection to the specified URL.
+     * @param url the URL to open
+     * @param method the HTTP request method to use
+     * @param compressed see {@link #open(URL, String, boolean)}
+     * @param connectTimeout the maximum time to wait for the connection to open, in milliseconds
+     * @param readTimeout the maximum time to wait for each read from the connection, in milliseconds
+     * @return the configured connection. The request has not been sent yet, so further request properties can be set on it.
+     * @throws IOException if the connection could not be opened
+     * @throws IllegalArgumentException if the URL is not an HTTP or HTTPS URL
+     */
+    public static HttpURLConnection open(@NotNull URL url, @NotNull String method, boolean compressed, int connectTimeout, int readTimeout) throws IOException
+    {
+        if(!isHttp(url)) throw new IllegalArgumentException("URL must use the HTTP or HTTPS protocol!");
+
+        Proxy p = proxy;
+        HttpURLConnection conn = (HttpURLConnection)(p == null ? url.openConnection() : url.openConnection(p));
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        conn.setUseCaches(false);
+        conn.setInstanceFollowRedirects(true);
+        conn.setRequestProperty("Accept-Encoding", compressed ? "gzip, deflate" : "identity");
+
+        String ua = userAgent;
+        if(ua != null) conn.setRequestProperty("User-Agent", ua);
+
+        return conn;
+    }
+
+    /**
+     * Gets the response body stream for an open connection, decoding it if it was compressed. The stream must be closed
+     * once it has been read, so that the connection can be returned to the keep-alive pool.
+     * If the server returned an error response, its body is discarded (freeing the connection for reuse), and the same
+     * exception that {@link URLConnection#getInputStream()} would throw is thrown instead: a {@link java.io.FileNotFoundException}
+     * for missing resources, or an {@link IOException} with the message {@code "Server returned HTTP response code: <code> for URL: <url>"}.
+     * @param conn the connection to get the response from
+     * @return the decoded response body
+     * @throws IOException if the server returned an error response, or if the response could not be read
+     */
+    public static InputStream getInputStream(@NotNull HttpURLConnection conn) throws IOException
+    {
+        int code = conn.getResponseCode();
+        if(code >= 400){
+            discard(conn.getErrorStream());
+            // Let the connection throw its usual exception for this response code, so that callers can inspect it as before.
+            conn.getInputStream().close();
+            throw new IOException("Server returned HTTP response code: " + code + " for URL: " + conn.getURL());
+        }
+
+        return decode(conn.getContentEncoding(), conn.getInputStream());
+    }
+
+    /**
+     * Gets the character set of a connection's response from its {@code Content-Type} header.
+     * @param conn the connection to check. Its response headers are read if they have not been already.
+     * @return the response character set, or UTF-8 if the server did not specify one or specified one that this JVM does
+     * not support
+     */
+    public static Charset getCharset(@NotNull URLConnection conn)
+    {
+        String type = conn.getContentType();
+        if(type == null) return StandardCharsets.UTF_8;
+
+        for(String param : type.split(";")){
+            param = param.trim();
+            if(!param.regionMatches(true, 0, "charset=", 0, 8)) continue;
+
+            String name = param.substring(8).trim();
+            if(name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) name = name.substring(1, name.length() - 1);
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Reads and discards the rest of a response stream, then closes it. Used for responses whose bodies are not needed
+     * (such as error responses), since a connection is only returned to the keep-alive pool if its response is fully read.
+     * Streams longer than a small limit are closed without being read, which closes their connection.
+     * @param in the stream to discard. If this is null, no action is taken.
+     */
+    public static void discard(@Nullable InputStream in)
+    {
+        if(in == null) return;
+
+        try {
+            byte[] buffer = new byte[8192];
+            int total = 0;
+            int read;
+            while(total < MAX_DISCARD_LENGTH && (read = in.read(buffer)) != -1) total += read;
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private static InputStream decode(@Nullable String encoding, @NotNull InputStream in) throws IOException
+    {
+        if(encoding == null) return in;
+
+        encoding = encoding.trim().toLowerCase();
+        if(encoding.equals("gzip") || encoding.equals("x-gzip")) return new GZIPInputStream(in, 8192);
+        else if(encoding.equals("deflate")) return new InflaterInputStream(in);
+        else return in;
+    }
+
+    /**
+     * Sets the default maximum time to wait for a connection to open. Applies to all connections opened afterwards that
+     * do not specify their own timeouts.
+     * @param timeout the connection timeout, in milliseconds. 0 waits indefinitely. Values less than 0 are treated as 0.
+     */
+    public static void setConnectTimeout(int timeout) {
+        connectTimeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Sets the default maximum time to wait for each read from a connection. Applies to all connections opened afterwards
+     * that do not specify their own timeouts.
+     * @param timeout the read timeout, in milliseconds. 0 waits indefinitely. Values less than 0 are treated as 0.
+     */
+    public static void setReadTimeout(int timeout) {
+        readTimeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Sets the {@code User-Agent} header sent with all requests.
+     * @param agent the user agent to send, or null to use the JVM's default
+     */
+    public static void setUserAgent(@Nullable String agent) {
+        userAgent = agent;
+    }
+
+    /**
+     * Sets the proxy that all connections are opened through.
+     * @param p the proxy to use, {@link Proxy#NO_PROXY} to connect directly, or null to use the JVM's default proxy settings
+     */
+    public static void setProxy(@Nullable Proxy p) {
+        proxy = p;
+    }
+
+    public static int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public static int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public static String getUserAgent() {
+        return userAgent;
+    }
+
+    public static Proxy getProxy() {
+        return proxy;
+    }
+}
@@ -1,5 +1,9 @@
 package core.CoreUtil.ARKJsonParser;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
 /**
  * Represents a JSON element or compound element. Elements are identified by a name, and may contain either a value or
  * any number of sub-elements (instances of this object). As such, element trees may be (theoretically) infinitely deep.
@@ -17,6 +21,7 @@ public class ARKJsonElement
     private String name;
     private String value;
     private boolean isArray;
+    private ARKJsonNameIndex nameIndex;
 
     /**
      * Constructs a new instance of this object.
@@ -27,14 +32,15 @@ public class ARKJsonElement
      * @param value the value of this element. Values may be of any type, but are always represented as strings.
      *              This should be {@code null} if this is a compound element, array-type element, or array member element.
      * @param subElements the list of child or sub-elements below this element in the element hierarchy. This should be {@code null}
-     *                    if this is a standard-type element with a non-{@code null} value property.
+     *                    if this is a standard-type element with a non-{@code null} value property. The array is copied,
+     *                    so later changes to it do not affect this element.
      */
     public ARKJsonElement(String name, boolean isArray, String value, ARKJsonElement... subElements)
     {
         this.name = name;
         this.value = value;
         this.isArray = isArray;
-        this.subElements = subElements;
+        this.subElements = subElements == null ? null : subElements.clone();
     }
 
     /**
@@ -70,9 +76,15 @@ public class ARKJsonElement
 
     /**
      * Gets the current set of sub-elements possessed by this element, or null if it does not have any.
+     * The returned array is a copy; use {@link #addSubElement(ARKJsonElement)} to change this element's sub-elements.
      * @return this element's sub-element list
      */
-    public ARKJsonElement[] getSubElements(){return this.subElements;}
+    public ARKJsonElement[] getSubElements(){
+        return this.subElements == null ? null : this.subElements.clone();}
+
+    // Package-private access to the sub-element array itself, for read-only use inside this package without copying.
+    ARKJsonElement[] subElements(){
+        return this.subElements;}
 
     /**
      * Gets if this element is an array-type element. If a call to this method returns {@code true}, calling {@link #hasSubElements()}
@@ -85,6 +97,7 @@ public class ARKJsonElement
 
     /**
      * Gets one of this element's sub-elements by searching the top level of the sub-element list by name.
+     * Lookups on elements with many sub-elements are done through a hash index, which is built on the first lookup.
      * Will thrown an {@link IllegalArgumentException} if this element is non-compound and non-array.
      * @param name the name of the sub-element to search for
      * @return the first element in the sub-element list with a name matching the query, or null if none was found
@@ -93,17 +106,15 @@ public class ARKJsonElement
     {
         if(!this.hasSubElements()) throw new IllegalArgumentException("This object does not possess sub-elements.");
 
-        for(ARKJsonElement e : subElements) {
-            if(e.getName().equals(name)) return e;
-        }
-        return null;
+        if(nameIndex == null) nameIndex = new ARKJsonNameIndex();
+        return nameIndex.find(Arrays.asList(subElements), name);
     }
 
     /**
      * Gets one of this element's sub-elements by its relative index in the sub-element array.
      * Will thrown an {@link IllegalArgumentException} if this element is non-compound and non-array, or if the provided
      * index is negative or out-of-bounds.
-     * Equivalent to calling {@code {@link #getSubElements()}[index]}.
+     * Equivalent to calling {@code {@link #getSubElements()}[index]}, without copying the sub-element array.
      * @param index the index of the element to search for
      * @return the sub-element at the provided index. Will not return null unless the element at the specified index is null.
      */
@@ -127,6 +138,7 @@ public class ARKJsonElement
         System.arraycopy(subElements, 0, temp, 0, subElements.length);
         temp[temp.length - 1] = e;
         subElements = temp;
+        if(nameIndex != null) nameIndex.invalidate();
     }
 
     /**
@@ -146,11 +158,12 @@ public class ARKJsonElement
         if(after > 0) System.arraycopy(subElements, index, temp, index + 1, after);
         temp[index] = e;
         subElements = temp;
+        if(nameIndex != null) nameIndex.invalidate();
     }
 
     /**
-     * Translates this element into formatted JSON text with proper spacing. Recursively calls this method on all of its
-     * sub-elements if it has any.
+     * Translates this element into formatted JSON text with proper spacing, including all of its sub-elements if it has any.
+     * To write large element trees without building them into a String first, use an {@link ARKJsonWriter} instead.
      * @param spaceCount the number of leading spaces to be placed before this element. If this element has sub-elements,
      *                   they will use spacing equal to this argument plus {@link ARKJsonParser#INDENT_SPACING_COUNT} for each
      *                   level of sub-element.
@@ -160,41 +173,13 @@ public class ARKJsonElement
      */
     public String toJSON(int spaceCount, boolean isFinal)
     {
-        // If this element has neither a value nor a name, and is not compound, it is invalid, and should not be added to the output.
-        // Return an empty string.
-        if(this.name == null && this.value == null && !this.hasSubElements()) return "";
-
-        StringBuilder str = new StringBuilder();
-
-        String spacer = "";
-        for(int i = 0; i < spaceCount; i++) spacer += " ";
-
-        // Since this element is non-compound, it must have either a name or a value (or one of the two). Append them,
-        // along with spacing and comma if necessary.
-        if(!this.hasSubElements()){
-            str.append(spacer);
-            if(this.name != null) str.append("\"").append(this.name).append("\"").append(": ");
-            str.append(this.value == null ? "" : "\"" + this.getDeQuotedValue() + "\"");
-            if(!isFinal) str.append(",");
-            str.append(ARKJsonParser.LINE_SEPARATOR);
-            return str.toString();
-        }
-
-        // If this element is compound, append its name if it has one and its block opener character.
-        str.append(spacer);
-        if(this.name != null) str.append("\"").append(this.name).append("\"").append(": ");
-        str.append(this.isArray ? '[' : '{');
-        str.append(ARKJsonParser.LINE_SEPARATOR);
-
-        // Add all sub-elements.
-        for(int i = 0; i < subElements.length; i++){
-            ARKJsonElement e = subElements[i];
-            str.append(e.toJSON(spaceCount + ARKJsonParser.INDENT_SPACING_COUNT, i == subElements.length - 1));
+        StringWriter str = new StringWriter();
+        try {
+            new ARKJsonWriter(str, false).writeElement(this, spaceCount, isFinal);
+        } catch (IOException e) {
+            // StringWriters do not throw.
+            throw new IllegalStateException(e);
         }
-
-        // Add block close character, comma if this is not the final entry, and spacing.
-        str.append(spacer).append(this.isArray ? ']' : '}').append(isFinal ? "" : ",").append(ARKJsonParser.LINE_SEPARATOR);
-
         return str.toString();
     }
 }
@@ -0,0 +1,145 @@
+package core.CoreUtil.ARKJsonParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The list type used for the top-level element and array maps of an {@link ARKJsonObject}. Behaves exactly like an
+ * {@link ArrayList}, since the maps are handed out to (and modified by) callers, but also keeps an {@link ARKJsonNameIndex}
+ * for name lookups, which is invalidated by every method that changes the list.
+ * Changes made through a {@link #subList(int, int) sub-list} view cannot be tracked, so once a sub-list has been taken,
+ * name lookups on the list fall back to a linear search.
+ */
+class ARKJsonElementList extends ArrayList<ARKJsonElement>
+{
+    private static final long serialVersionUID = 1L;
+
+    private transient ARKJsonNameIndex index;
+    private transient boolean untracked;
+
+    ARKJsonElementList() {
+        super();
+    }
+
+    /**
+     * Finds the first element in this list with the specified name.
+     * @param name the name to search for
+     * @return the first element with the specified name, or null if there is none
+     */
+    ARKJsonElement findByName(String name)
+    {
+        if(untracked){
+            if(name != null) for(ARKJsonElement e : this) if(e != null && name.equals(e.getName())) return e;
+            return null;
+        }
+
+        if(index == null) index = new ARKJsonNameIndex();
+        return index.find(this, name);
+    }
+
+    private void changed() {
+        if(index != null) index.invalidate();
+    }
+
+    @Override
+    public boolean add(ARKJsonElement e) {
+        changed();
+        return super.add(e);
+    }
+
+    @Override
+    public void add(int index, ARKJsonElement element) {
+        changed();
+        super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ARKJsonElement> c) {
+        changed();
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends ARKJsonElement> c) {
+        changed();
+        return super.addAll(index, c);
+    }
+
+    @Override
+    public ARKJsonElement set(int index, ARKJsonElement element) {
+        changed();
+        return super.set(index, element);
+    }
+
+    @Override
+    public ARKJsonElement remove(int index) {
+        changed();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        changed();
+        return super.remove(o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        changed();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        changed();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super ARKJsonElement> filter) {
+        changed();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<ARKJsonElement> operator) {
+        changed();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super ARKJsonElement> c) {
+        changed();
+        super.sort(c);
+    }
+
+    @Override
+    public void clear() {
+        changed();
+        super.clear();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        changed();
+        super.removeRange(fromIndex, toIndex);
+    }
+
+    @Override
+    public List<ARKJsonElement> subList(int fromIndex, int toIndex) {
+        untracked = true;
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Object clone()
+    {
+        ARKJsonElementList copy = (ARKJsonElementList)super.clone();
+        copy.index = null;
+        return copy;
+    }
+}
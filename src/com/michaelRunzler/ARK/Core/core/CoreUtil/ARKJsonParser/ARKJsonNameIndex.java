@@ -0,0 +1,62 @@
+package core.CoreUtil.ARKJsonParser;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Looks up {@link ARKJsonElement}s by name in a list of elements, using a lazily built hash index for lists that are
+ * large enough to benefit from one. The list itself is never reordered, so element order is unaffected.
+ * The index cannot tell when its list has changed, so its owner must call {@link #invalidate()} after every change to
+ * the list; the index is then rebuilt on the next lookup. For this reason, indexed lists must not be exposed to
+ * callers directly (see {@link ARKJsonElementList}).
+ * As with a linear search, lookups return the first element in the list with a matching name.
+ */
+class ARKJsonNameIndex
+{
+    // Lists smaller than this are searched linearly, since building an index for them costs more than it saves.
+    private static final int MIN_INDEXED_SIZE = 8;
+
+    private HashMap<String, Integer> positions;
+
+    ARKJsonNameIndex() {
+        this.positions = null;
+    }
+
+    /**
+     * Finds the first element in a list with the specified name.
+     * @param elements the list to search. Must be the same list (or a view of the same array) on every call, and must
+     *                 not have changed since the last call unless {@link #invalidate()} has been called since.
+     * @param name the name to search for
+     * @return the first element with the specified name, or null if there is none
+     */
+    ARKJsonElement find(List<ARKJsonElement> elements, String name)
+    {
+        if(name == null) return null;
+
+        if(elements.size() < MIN_INDEXED_SIZE){
+            for(ARKJsonElement e : elements) if(e != null && name.equals(e.getName())) return e;
+            return null;
+        }
+
+        if(positions == null) build(elements);
+
+        Integer pos = positions.get(name);
+        return pos == null ? null : elements.get(pos);
+    }
+
+    /**
+     * Discards the index, so that it is rebuilt from the list on the next lookup. Must be called whenever the list changes.
+     */
+    void invalidate() {
+        positions = null;
+    }
+
+    private void build(List<ARKJsonElement> elements)
+    {
+        positions = new HashMap<>(elements.size() * 2);
+        for(int i = 0; i < elements.size(); i++){
+            ARKJsonElement e = elements.get(i);
+            if(e != null && e.getName() != null) positions.putIfAbsent(e.getName(), i);
+        }
+    }
+}
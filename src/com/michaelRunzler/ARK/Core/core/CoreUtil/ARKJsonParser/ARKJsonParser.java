@@ -2,8 +2,7 @@ package core.CoreUtil.ARKJsonParser;
 
 import core.CoreUtil.IOTools;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
 
@@ -18,18 +17,21 @@ public class ARKJsonParser
     /**
      * Parses an {@link ARKJsonObject} from a source text file.
      * @param source the {@link File} to load JSON data from
-     * @return the result of parsing data from the source file, or null if the file could not be parsed as JSON (or was empty)
-     * @throws IOException if an unrecoverable error was encountered during the file load or parsing process
+     * @return the result of parsing data from the source file, or null if the file was empty
+     * @throws IOException if the file does not contain a valid JSON object, or if any other unrecoverable error was encountered during the file load or parsing process
      */
-    public static ARKJsonObject loadFromFile(File source) throws IOException {
-        return new ARKJsonObject(formatJSONStr(IOTools.loadDataFromFile(source), INDENT_SPACING_COUNT));
+    public static ARKJsonObject loadFromFile(File source) throws IOException
+    {
+        try(Reader reader = new BufferedReader(new FileReader(source))){
+            return parse(reader);
+        }
     }
 
     /**
      * Parses the response data from a GET request to the provided {@link URL} into a {@link ARKJsonObject}.
      * @param source the {@link URL} to retrieve JSON data from
-     * @return the result of parsing the server's response data, or null if the data could not be parsed as JSON (or was zero-length)
-     * @throws IOException if the server returned an HTTP error code, or if any other unrecoverable error was encountered during the retrieval or parsing process
+     * @return the result of parsing the server's response data, or null if the data was zero-length
+     * @throws IOException if the server returned an HTTP error code or data that is not a valid JSON object, or if any other unrecoverable error was encountered during the retrieval or parsing process
      */
     public static ARKJsonObject loadFromURL(URL source) throws IOException {
         return loadFromURL(source.toString());
@@ -38,11 +40,69 @@ public class ARKJsonParser
     /**
      * Parses the response data from a GET request to the provided String representation of a URL into a {@link ARKJsonObject}.
      * @param source the String representation of a URL to retrieve JSON data from
-     * @return the result of parsing the server's response data, or null if the data could not be parsed as JSON (or was zero-length)
-     * @throws IOException if the server returned an HTTP error code, or if any other unrecoverable error was encountered during the retrieval or parsing process
+     * @return the result of parsing the server's response data, or null if the data was zero-length
+     * @throws IOException if the server returned an HTTP error code or data that is not a valid JSON object, or if any other unrecoverable error was encountered during the retrieval or parsing process
+     */
+    public static ARKJsonObject loadFromURL(String source) throws IOException
+    {
+        try(Reader reader = IOTools.getReaderFromURL(source)){
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses a JSON document from a {@link Reader} into a {@link ARKJsonObject}, in a single pass using an {@link ARKJsonTokenizer}.
+     * The document does not need to be formatted in any particular way. The reader is not closed.
+     * @param source the {@link Reader} to read JSON data from
+     * @return the result of parsing the data, or null if the reader contained no data
+     * @throws IOException if the data is not a valid JSON object, or if it could not be read
      */
-    public static ARKJsonObject loadFromURL(String source) throws IOException {
-        return new ARKJsonObject(formatJSONStr(IOTools.getStringFromURL(source), INDENT_SPACING_COUNT));
+    public static ARKJsonObject parse(Reader source) throws IOException
+    {
+        ARKJsonTokenizer tokens = new ARKJsonTokenizer(source);
+
+        ARKJsonTokenizer.Token token = tokens.next();
+        if(token == ARKJsonTokenizer.Token.END_DOCUMENT) return null;
+        else if(token != ARKJsonTokenizer.Token.BEGIN_OBJECT) throw new IOException("Invalid JSON: document must be an object");
+
+        // Top-level arrays and other elements are stored separately by the object.
+        ARKJsonElementList elements = new ARKJsonElementList();
+        ARKJsonElementList arrays = new ARKJsonElementList();
+        while((token = tokens.next()) != ARKJsonTokenizer.Token.END_OBJECT)
+        {
+            String name = tokens.getText();
+            ARKJsonElement e = readElement(tokens, name, tokens.next());
+            if(e.isArray()) arrays.add(e);
+            else elements.add(e);
+        }
+
+        // Makes sure that there is nothing after the end of the root object.
+        tokens.next();
+
+        return new ARKJsonObject(elements, arrays);
+    }
+
+    // Builds the element that starts with the specified token, reading the rest of its tokens if it is a compound element.
+    private static ARKJsonElement readElement(ARKJsonTokenizer tokens, String name, ARKJsonTokenizer.Token token) throws IOException
+    {
+        if(token == ARKJsonTokenizer.Token.VALUE) return new ARKJsonElement(name, false, tokens.getText());
+
+        boolean isArray = token == ARKJsonTokenizer.Token.BEGIN_ARRAY;
+        ARKJsonTokenizer.Token end = isArray ? ARKJsonTokenizer.Token.END_ARRAY : ARKJsonTokenizer.Token.END_OBJECT;
+
+        // Array members have no names, so the next token is the member itself. Object members start with their name.
+        ArrayList<ARKJsonElement> children = new ArrayList<>();
+        while((token = tokens.next()) != end)
+        {
+            String childName = null;
+            if(!isArray){
+                childName = tokens.getText();
+                token = tokens.next();
+            }
+            children.add(readElement(tokens, childName, token));
+        }
+
+        return new ARKJsonElement(name, isArray, null, children.toArray(new ARKJsonElement[children.size()]));
     }
 
     /**
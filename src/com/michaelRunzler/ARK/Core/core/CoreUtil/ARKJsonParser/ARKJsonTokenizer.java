@@ -0,0 +1,268 @@
+package core.CoreUtil.ARKJsonParser;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON document from a {@link Reader} as a stream of tokens, in a single pass and without loading the entire
+ * document into memory. Formatting (indentation, line separators, or the lack of either) does not matter.
+ * Each call to {@link #next()} returns the next token in the document; names and values are available through
+ * {@link #getText()} until the next call. Values are returned in the same raw form that {@link ARKJsonElement} stores them:
+ * string values keep their surrounding quotes and escape sequences (apart from escaped forward slashes, which are
+ * unescaped), and all other values are returned exactly as they appear in the document.
+ * Structural errors (such as a missing comma or an unclosed block) are reported as {@link IOException}s.
+ */
+public class ARKJsonTokenizer implements Closeable
+{
+    /**
+     * The types of token that can be read from a document.
+     */
+    public enum Token
+    {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY,
+        /** An object member name. Its text is the name without quotes. */
+        NAME,
+        /** A string, number, boolean, or null value. Its text is the raw value, including quotes for strings. */
+        VALUE,
+        /** The end of the document. Returned repeatedly once reached. */
+        END_DOCUMENT
+    }
+
+    // Parser states, describing what is allowed to come next.
+    private static final int STATE_VALUE = 0;        // A value (document start, after a name, after a comma in an array)
+    private static final int STATE_FIRST_VALUE = 1;  // A value or the end of the array (after an array opens)
+    private static final int STATE_FIRST_NAME = 2;   // A name or the end of the object (after an object opens)
+    private static final int STATE_AFTER_VALUE = 3;  // A comma or the end of the enclosing block
+    private static final int STATE_DONE = 4;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+    private long offset;
+
+    // Block nesting stack. True entries are objects, false entries are arrays.
+    private boolean[] stack;
+    private int depth;
+    private int state;
+
+    private final StringBuilder text;
+    private boolean hasText;
+
+    /**
+     * Creates a new tokenizer over the specified reader. The reader is read in blocks, so it does not need to be buffered.
+     * @param reader the reader to read the JSON document from
+     */
+    public ARKJsonTokenizer(@NotNull Reader reader)
+    {
+        this.reader = reader;
+        this.buffer = new char[8192];
+        this.pos = 0;
+        this.limit = 0;
+        this.offset = 0;
+        this.stack = new boolean[16];
+        this.depth = 0;
+        this.state = STATE_VALUE;
+        this.text = new StringBuilder();
+        this.hasText = false;
+    }
+
+    /**
+     * Reads the next token from the document.
+     * @return the next token, or {@link Token#END_DOCUMENT} if the end of the document has been reached
+     * @throws IOException if the document is not valid JSON, or if it could not be read
+     */
+    public Token next() throws IOException
+    {
+        hasText = false;
+        int c = skipWhitespace();
+
+        switch (state)
+        {
+            case STATE_DONE:
+                return Token.END_DOCUMENT;
+            case STATE_AFTER_VALUE:
+                if(depth == 0){
+                    if(c != -1) throw error("Unexpected data after end of document");
+                    state = STATE_DONE;
+                    return Token.END_DOCUMENT;
+                }
+
+                if(c == ','){
+                    c = skipWhitespace();
+                    return stack[depth - 1] ? readName(c) : readValue(c);
+                }
+                return readClose(c);
+            case STATE_FIRST_NAME:
+                return c == '}' ? readClose(c) : readName(c);
+            case STATE_FIRST_VALUE:
+                return c == ']' ? readClose(c) : readValue(c);
+            default:
+                return readValue(c);
+        }
+    }
+
+    /**
+     * Gets the text of the last token read. Only valid for {@link Token#NAME} and {@link Token#VALUE} tokens.
+     * @return the name or raw value of the last token, or null if the last token had no text
+     */
+    public String getText() {
+        return hasText ? text.toString() : null;
+    }
+
+    /**
+     * @return the current block nesting depth. 0 at the top level of the document, 1 inside the root object, and so on.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Closes the underlying reader.
+     * @throws IOException if the reader could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Token readName(int c) throws IOException
+    {
+        if(c != '"') throw error("Expected a quoted member name");
+        readString(false);
+        if(skipWhitespace() != ':') throw error("Expected ':' after member name");
+
+        state = STATE_VALUE;
+        return Token.NAME;
+    }
+
+    private Token readValue(int c) throws IOException
+    {
+        switch (c)
+        {
+            case -1:
+                throw error("Unexpected end of document");
+            case '{':
+                push(true);
+                state = STATE_FIRST_NAME;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(false);
+                state = STATE_FIRST_VALUE;
+                return Token.BEGIN_ARRAY;
+            case '"':
+                readString(true);
+                state = STATE_AFTER_VALUE;
+                return Token.VALUE;
+            default:
+                readLiteral(c);
+                state = STATE_AFTER_VALUE;
+                return Token.VALUE;
+        }
+    }
+
+    private Token readClose(int c) throws IOException
+    {
+        boolean object = depth > 0 && stack[depth - 1];
+        if(depth == 0 || c != (object ? '}' : ']'))
+            throw error(c == -1 ? "Unexpected end of document" : "Expected ',' or '" + (object ? '}' : ']') + "'");
+
+        depth --;
+        state = STATE_AFTER_VALUE;
+        return object ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+
+    // Reads a string whose opening quote has already been consumed into the text buffer.
+    private void readString(boolean keepQuotes) throws IOException
+    {
+        text.setLength(0);
+        hasText = true;
+        if(keepQuotes) text.append('"');
+
+        while(true)
+        {
+            int c = read();
+            if(c == -1) throw error("Unterminated string");
+            else if(c == '"') break;
+            else if(c == '\\'){
+                int e = read();
+                if(e == -1) throw error("Unterminated string");
+                // Escaped forward slashes are unescaped, as they always have been by this parser. All other escape
+                // sequences are kept as they are.
+                if(e != '/') text.append('\\');
+                text.append((char)e);
+            }else text.append((char)c);
+        }
+
+        if(keepQuotes) text.append('"');
+    }
+
+    // Reads a number, boolean, or null literal, the first character of which has already been consumed.
+    private void readLiteral(int first) throws IOException
+    {
+        if(!(first == '-' || (first >= '0' && first <= '9') || first == 't' || first == 'f' || first == 'n'))
+            throw error("Unexpected character '" + (char)first + "'");
+
+        text.setLength(0);
+        hasText = true;
+        text.append((char)first);
+
+        while(true)
+        {
+            int c = peek();
+            if(c == -1 || c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) break;
+            text.append((char)read());
+        }
+    }
+
+    private void push(boolean object)
+    {
+        if(depth == stack.length){
+            boolean[] temp = new boolean[stack.length * 2];
+            System.arraycopy(stack, 0, temp, 0, stack.length);
+            stack = temp;
+        }
+        stack[depth ++] = object;
+    }
+
+    private int skipWhitespace() throws IOException
+    {
+        int c;
+        do{
+            c = read();
+        }while(c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException
+    {
+        if(pos == limit && !fill()) return -1;
+        offset ++;
+        return buffer[pos ++];
+    }
+
+    private int peek() throws IOException
+    {
+        if(pos == limit && !fill()) return -1;
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException
+    {
+        int read;
+        do{
+            read = reader.read(buffer, 0, buffer.length);
+        }while(read == 0);
+
+        pos = 0;
+        limit = Math.max(0, read);
+        return read > 0;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Invalid JSON at character " + offset + ": " + message);
+    }
+}
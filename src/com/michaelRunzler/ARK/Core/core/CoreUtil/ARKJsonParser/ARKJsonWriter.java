@@ -0,0 +1,133 @@
+package core.CoreUtil.ARKJsonParser;
+
+import com.sun.istack.internal.NotNull;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes {@link ARKJsonObject}s and {@link ARKJsonElement}s to a {@link Writer} as JSON text, element by element, without
+ * building the document in memory first.
+ * In indented mode, output is identical to that of {@link ARKJsonObject#getJSONText()} and {@link ARKJsonElement#toJSON(int, boolean)}.
+ * In compact mode, all indentation and line separators are left out.
+ */
+public class ARKJsonWriter implements Closeable, Flushable
+{
+    private final Writer out;
+    private final boolean compact;
+    private char[] spaces;
+
+    /**
+     * Creates a new writer.
+     * @param out the {@link Writer} to write JSON text to. Output is written in small pieces, so this should be buffered.
+     * @param compact set this to true to leave out all indentation and line separators
+     */
+    public ARKJsonWriter(@NotNull Writer out, boolean compact)
+    {
+        this.out = out;
+        this.compact = compact;
+        this.spaces = new char[64];
+        for(int i = 0; i < spaces.length; i++) spaces[i] = ' ';
+    }
+
+    /**
+     * Writes an entire JSON document. Writes nothing if the object has no elements.
+     * @param obj the object to write
+     * @throws IOException if the output could not be written
+     */
+    public void write(@NotNull ARKJsonObject obj) throws IOException
+    {
+        if(obj.getElementMap().size() == 0 && obj.getArrayMap().size() == 0) return;
+
+        out.write('{');
+        newline();
+
+        // Standalone elements come first, followed by standalone arrays.
+        int elementCount = obj.getElementMap().size();
+        int arrayCount = obj.getArrayMap().size();
+        for(int i = 0; i < elementCount; i++)
+            writeElement(obj.getElementMap().get(i), ARKJsonParser.INDENT_SPACING_COUNT, i == elementCount - 1 && arrayCount == 0);
+
+        for(int i = 0; i < arrayCount; i++)
+            writeElement(obj.getArrayMap().get(i), ARKJsonParser.INDENT_SPACING_COUNT, i == arrayCount - 1);
+
+        out.write('}');
+    }
+
+    /**
+     * Writes a single element and all of its sub-elements, followed by a line separator (in indented mode).
+     * @param e the element to write
+     * @param isFinal if this is set to {@code false}, a comma is written after the element
+     * @throws IOException if the output could not be written
+     */
+    public void write(@NotNull ARKJsonElement e, boolean isFinal) throws IOException {
+        writeElement(e, 0, isFinal);
+    }
+
+    // See ARKJsonElement.toJSON for the layout that this reproduces.
+    void writeElement(ARKJsonElement e, int spaceCount, boolean isFinal) throws IOException
+    {
+        // Elements with neither a name nor a value that are not compound are invalid, and are left out.
+        if(e.getName() == null && e.getValue() == null && !e.hasSubElements()) return;
+
+        indent(spaceCount);
+        if(e.getName() != null){
+            out.write('"');
+            out.write(e.getName());
+            out.write(compact ? "\":" : "\": ");
+        }
+
+        if(!e.hasSubElements()){
+            if(e.getValue() != null){
+                out.write('"');
+                out.write(e.getDeQuotedValue());
+                out.write('"');
+            }
+            if(!isFinal) out.write(',');
+            newline();
+            return;
+        }
+
+        out.write(e.isArray() ? '[' : '{');
+        newline();
+
+        ARKJsonElement[] subElements = e.subElements();
+        for(int i = 0; i < subElements.length; i++)
+            writeElement(subElements[i], spaceCount + ARKJsonParser.INDENT_SPACING_COUNT, i == subElements.length - 1);
+
+        indent(spaceCount);
+        out.write(e.isArray() ? ']' : '}');
+        if(!isFinal) out.write(',');
+        newline();
+    }
+
+    private void indent(int count) throws IOException
+    {
+        if(compact || count <= 0) return;
+        if(count > spaces.length){
+            spaces = new char[Math.max(count, spaces.length * 2)];
+            for(int i = 0; i < spaces.length; i++) spaces[i] = ' ';
+        }
+        out.write(spaces, 0, count);
+    }
+
+    private void newline() throws IOException {
+        if(!compact) out.write(ARKJsonParser.LINE_SEPARATOR);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying {@link Writer}.
+     * @throws IOException if the writer could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
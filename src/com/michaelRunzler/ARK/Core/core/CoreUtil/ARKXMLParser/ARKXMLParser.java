@@ -8,15 +8,24 @@ import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Provides methods for reading the contents of XML documents.
+ * By default, every element in a parsed document is stored (along with a name index for fast lookups), and can be
+ * retrieved once parsing is complete. For large documents, {@link ElementHandler}s can be registered for specific element
+ * names with {@link #addElementHandler(String, ElementHandler)}, and run as each matching element is parsed. If storage is
+ * also turned off with {@link #setBuffering(boolean)}, documents of any size can be parsed in constant memory.
  */
 public class ARKXMLParser extends DefaultHandler
 {
     //to prevent access to internal super methods - make private and wrap in a public object container class?
     private ArrayList<Element> elements;
+    private HashMap<String, ArrayList<Element>> index;
+    private HashMap<String, ArrayList<ElementHandler>> handlers;
+    private boolean buffering;
     private SAXParser saxParser;
     private XMLReader xmlReader;
     private ARKXMLParserStateWrapper state = new ARKXMLParserStateWrapper(ARKXMLParserState.NULL);
@@ -38,6 +47,22 @@ public class ARKXMLParser extends DefaultHandler
         NULL,INIT,IDLE,PARSING,COMPLETE,WARNING,ERROR,FATAL
     }
 
+    /**
+     * Receives elements from the parser as they are parsed. See {@link #addElementHandler(String, ElementHandler)}.
+     */
+    @FunctionalInterface
+    public interface ElementHandler
+    {
+        /**
+         * Called when the opening tag of a matching element has been parsed.
+         * @param name the local name of the element
+         * @param attributes the attributes of the element. Only valid for the duration of the call; copy them (for
+         *                   example, by constructing an {@link Element}) if they are needed afterwards.
+         * @throws SAXException to abort parsing
+         */
+        void handleElement(String name, Attributes attributes) throws SAXException;
+    }
+
     /**
      * Creates a new com.michaelRunzler.ARK XML Parser object with associated readers and utility objects.
      */
@@ -45,6 +70,9 @@ public class ARKXMLParser extends DefaultHandler
     {
         state.state = ARKXMLParserState.INIT;
         elements = new ArrayList<>();
+        index = new HashMap<>();
+        handlers = new HashMap<>();
+        buffering = true;
 
         try {
             SAXParserFactory spf = SAXParserFactory.newInstance();
@@ -69,8 +97,16 @@ public class ARKXMLParser extends DefaultHandler
         state.state = ARKXMLParserState.COMPLETE;
     }
 
-    public void startElement(String namespaceURI, String localName, String qName, Attributes atts) throws SAXException {
-        elements.add(new Element(localName, atts));
+    public void startElement(String namespaceURI, String localName, String qName, Attributes atts) throws SAXException
+    {
+        ArrayList<ElementHandler> h = handlers.get(localName);
+        if(h != null) for(ElementHandler handler : h) handler.handleElement(localName, atts);
+
+        if(buffering){
+            Element e = new Element(localName, atts);
+            elements.add(e);
+            index.computeIfAbsent(localName, k -> new ArrayList<>()).add(e);
+        }
     }
     //end methods from super
 
@@ -104,6 +140,64 @@ public class ARKXMLParser extends DefaultHandler
         xmlReader.parse(source);
     }
 
+    /**
+     * Parses an XML document from a character stream, such as one from {@link core.CoreUtil.IOTools#getReaderFromURL(String)},
+     * and reads its contents to the internal element list. The document is parsed as it is read. The reader is not closed.
+     * @param source the Reader to read the XML document from
+     * @throws IOException if the reader could not be read
+     * @throws SAXException if the parser encounters an error while parsing the document, or if an {@link ElementHandler} aborts parsing
+     */
+    public void parseXMLDocument(Reader source) throws IOException, SAXException
+    {
+        xmlReader.parse(new InputSource(source));
+    }
+
+    /**
+     * Registers a handler to be called as each element with the specified name is parsed. Handlers for the same name
+     * are called in the order that they were added, before the element is stored (if buffering is on).
+     * @param name the local name of the elements to handle
+     * @param handler the handler to call
+     */
+    public void addElementHandler(String name, ElementHandler handler) {
+        handlers.computeIfAbsent(name, k -> new ArrayList<>()).add(handler);
+    }
+
+    /**
+     * Removes a handler that was previously registered with {@link #addElementHandler(String, ElementHandler)}.
+     * @param name the element name that the handler was registered for
+     * @param handler the handler to remove
+     */
+    public void removeElementHandler(String name, ElementHandler handler)
+    {
+        ArrayList<ElementHandler> h = handlers.get(name);
+        if(h != null && h.remove(handler) && h.isEmpty()) handlers.remove(name);
+    }
+
+    /**
+     * Sets whether parsed elements are stored for retrieval after parsing. On by default. Turning this off only affects
+     * elements parsed afterwards; elements that have already been stored are kept.
+     * @param buffering true to store parsed elements, false to only pass them to any registered {@link ElementHandler}s
+     */
+    public void setBuffering(boolean buffering) {
+        this.buffering = buffering;
+    }
+
+    /**
+     * @return true if parsed elements are being stored for retrieval after parsing
+     */
+    public boolean isBuffering() {
+        return buffering;
+    }
+
+    /**
+     * Removes all stored elements.
+     */
+    public void clearElements()
+    {
+        elements.clear();
+        index.clear();
+    }
+
     /**
      * Gets a copy of the element list that is currently being stored by this object.
      * @return a copied version of the list of elements stored by the parser object, or null if there are none
@@ -117,47 +211,27 @@ public class ARKXMLParser extends DefaultHandler
     }
 
     /**
-     * Gets an element with a specific name if it exists.
+     * Gets an element with a specific name if it exists. Lookups are done through a name index, and take constant time.
+     * The returned element is the one stored by this parser, not a copy, as with {@link #getAllElements()}.
      * @param name the name of the element to get
      * @return the first element with the specified name, or null if no elements with that name exist
      */
     public Element getElementByName(String name)
     {
-        for(Element e : elements){
-            if(e.getName().equals(name)){
-                try {
-                    return Element.cloneObject(e);
-                } catch (IllegalAccessException e1) {
-                    e1.printStackTrace();
-                }
-            }
-        }
-        return null;
+        ArrayList<Element> matches = index.get(name);
+        return matches == null || matches.isEmpty() ? null : matches.get(0);
     }
 
     /**
-     * Gets all elements with the specified name.
+     * Gets all elements with the specified name, in document order. Lookups are done through a name index, and take
+     * constant time. The returned list is a copy, but the elements in it are the ones stored by this parser.
      * @param name the name of the elements to get
      * @return all elements with the specified name, or null if no elements with that name exist
      */
     public ArrayList<Element> getElementsByName(String name)
     {
-        ArrayList<Element> value = new ArrayList<>();
-
-        for(Element e : elements){
-            if(e.getName().equals(name)){
-                try {
-                    value.add(Element.cloneObject(e));
-                } catch (IllegalAccessException e1) {
-                    e1.printStackTrace();
-                }
-            }
-        }
-
-        if(value.size() > 0)
-            return value;
-        else
-            return null;
+        ArrayList<Element> matches = index.get(name);
+        return matches == null || matches.isEmpty() ? null : new ArrayList<>(matches);
     }
 
     /*
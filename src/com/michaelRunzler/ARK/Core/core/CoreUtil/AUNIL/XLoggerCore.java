@@ -12,6 +12,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import static core.CoreUtil.AUNIL.Callback.checkVerbosityLevel;
 
@@ -24,8 +29,13 @@ public class XLoggerCore
 {
     public final String LOG_FILE_EXTENSION = ".x34l";
 
+    // In asynchronous mode, file writers are flushed once this many events have been written to them since the last
+    // flush, or once this many milliseconds have passed since the last flush, whichever comes first.
+    private static final int ASYNC_FLUSH_SIZE = 256;
+    private static final long ASYNC_FLUSH_INTERVAL = 500;
+
     private File parent;
-    private boolean fileWrite;
+    private volatile boolean fileWrite;
 
     // NOTE: In this map, 'null' in the value bucket is shorthand for 'this object doesn't support file write at this time.'
     // Objects with this type of value should be treated as though global file write is off.
@@ -36,7 +46,18 @@ public class XLoggerCore
     private XLoggerInterpreter internal;
     private XLoggerInterpreter master;
     private DateFormat dateFormat;
-    private LogVerbosityLevel verbosity;
+    private volatile LogVerbosityLevel verbosity;
+
+    // Asynchronous write mode state. Events are added to the pending queue without locking by any thread, and are only
+    // ever processed by the writer thread, or by a thread that holds this object's lock and needs the queue drained.
+    private volatile boolean asyncWrite;
+    private volatile boolean asyncWriterIdle;
+    private Thread asyncWriter;
+    private final ConcurrentLinkedQueue<XLoggerLogEntry> pending;
+    private final HashSet<BufferedWriter> dirty;
+    private int unflushed;
+    private long lastFlush;
+
     // Must be package-local to allow direct access from Interpreter classes
     XLoggerInputStream streamRegistry;
 
@@ -51,6 +72,13 @@ public class XLoggerCore
         fileWrite = true;
         lockLogWrites = false;
         queue = new ArrayList<>();
+        asyncWrite = false;
+        asyncWriterIdle = false;
+        asyncWriter = null;
+        pending = new ConcurrentLinkedQueue<>();
+        dirty = new HashSet<>();
+        unflushed = 0;
+        lastFlush = System.currentTimeMillis();
         bridges = new HashMap<>();
         streamRegistry = new XLoggerInputStream();
         internal = new XLoggerInterpreter(this, "Logger Core");
@@ -146,6 +174,9 @@ public class XLoggerCore
 
         internal.logEvent(LogEventLevel.DEBUG, "Interpreter \"" + caller.friendlyName + "\" is requesting disassociation.");
 
+        // Write out anything that is still queued for this Interpreter before its writer goes away.
+        drainPending();
+
         // Close the Interpreter's writer if it has one.
         XLoggerFileWriteEntry xf = bridges.get(caller);
         try {
@@ -204,6 +235,11 @@ public class XLoggerCore
             lockLogWrites = true;
         }
 
+        // Write out any queued events before the writers are closed. Events logged from here on are held by the write lock.
+        synchronized (this) {
+            drainPending();
+        }
+
         this.parent = newParent;
 
         // If the parent directory check fails, file writing is automatically disabled anyway, so just return.
@@ -335,14 +371,118 @@ public class XLoggerCore
         }
     }
 
+    /**
+     * Gets whether or not asynchronous event processing is active.
+     * @param caller the {@link XLoggerInterpreter} that is requesting this information
+     * @return {@code true} if events are being written asynchronously, {@code false} if otherwise
+     */
+    boolean asyncLoggingEnabled(XLoggerInterpreter caller)
+    {
+        if(!checkCallerPermissions(caller)){
+            internal.logEvent(LogEventLevel.WARNING, "Interpreter \"" + caller.friendlyName + "\" attempted to check metadata while disassociated.");
+            throw new SecurityException("Caller does not have permission to perform this operation.");
+        }else return this.asyncWrite;
+    }
+
+    /**
+     * Enables or disables asynchronous event processing. While enabled, logging an event only timestamps it and adds it
+     * to a queue, so logging threads never wait on each other or on disk IO. A single writer thread takes events from the
+     * queue in order and writes them to the console, log files, and stream callbacks, flushing log files in batches
+     * rather than after every event. Any queued events are written out before Interpreters disassociate, before the parent
+     * directory changes, when this mode is disabled, and when the JVM shuts down.
+     * @param caller the {@link XLoggerInterpreter} that is requesting this change
+     * @param doAsyncLogging the desired enable state for asynchronous logging
+     */
+    synchronized void setAsyncLoggingEnable(XLoggerInterpreter caller, boolean doAsyncLogging)
+    {
+        if(!checkCallerPermissions(caller)){
+            internal.logEvent(LogEventLevel.WARNING, "Interpreter \"" + caller.friendlyName + "\" attempted to change async logging state while disassociated.");
+            throw new SecurityException("Caller does not have permission to perform this operation.");
+        }
+
+        if(doAsyncLogging == asyncWrite) return;
+        internal.logEvent(LogEventLevel.DEBUG, "Interpreter \"" + caller.friendlyName + "\" changed async write status to " + (doAsyncLogging ? "ENABLED" : "DISABLED"));
+
+        asyncWrite = doAsyncLogging;
+        if(doAsyncLogging){
+            asyncWriter = new Thread(this::runAsyncWriter, "AUNIL Async Writer");
+            asyncWriter.setDaemon(true);
+            asyncWriter.start();
+        }else{
+            // The writer thread exits on its own once it sees that async mode is off. Anything it has not picked up yet
+            // is written out here instead.
+            LockSupport.unpark(asyncWriter);
+            asyncWriter = null;
+            drainPending();
+        }
+    }
+
     /**
      * Logs an event to the system console, and, if file logging is enabled, to its own event log file inside the parent
      * directory set by this object. Checks its file before logging anything to it.
+     * If asynchronous logging is enabled, the event is queued and this method returns immediately.
      * @param caller the {@link XLoggerInterpreter Interpreter} that is requesting the logging operation
      * @param level the {@link LogEventLevel event level} that this event should be assigned, i.e its severity
      * @param message the message to log
      */
-    synchronized void logEvent(XLoggerInterpreter caller, LogEventLevel level, String message)
+    void logEvent(XLoggerInterpreter caller, LogEventLevel level, String message)
+    {
+        long time = System.currentTimeMillis();
+        if(asyncWrite){
+            pending.offer(new XLoggerLogEntry(caller, level, message, time));
+            if(asyncWriterIdle) LockSupport.unpark(asyncWriter);
+        }else logEventLocked(caller, level, message, time);
+    }
+
+    /**
+     * Logs an event whose message is only generated if it will actually be written somewhere. If the event would be
+     * discarded (see {@link #isLoggable(LogEventLevel)}), the supplier is never called. If asynchronous logging is enabled,
+     * the supplier is called later, on the writer thread, rather than on the calling thread.
+     * See {@link #logEvent(XLoggerInterpreter, LogEventLevel, String)} for information on operation and other arguments.
+     * @param message the supplier to get the message to log from
+     */
+    void logEvent(XLoggerInterpreter caller, LogEventLevel level, Supplier<String> message)
+    {
+        if(message == null){
+            logEvent(caller, level, (String)null);
+            return;
+        }
+        if(!isLoggable(level)) return;
+
+        long time = System.currentTimeMillis();
+        if(asyncWrite){
+            pending.offer(new XLoggerLogEntry(caller, level, message, time));
+            if(asyncWriterIdle) LockSupport.unpark(asyncWriter);
+        }else logEventLocked(caller, level, XLoggerLogEntry.resolve(message), time);
+    }
+
+    /**
+     * Checks whether an event of the specified level would be written anywhere if it were logged now: to the console
+     * (under the current verbosity level), to a log file (if file logging is enabled), or to a stream {@link Callback}.
+     * Log files and callbacks receive events of every level, so only the console verbosity level can rule an event out,
+     * and only when file logging is disabled and no callbacks are registered.
+     * Does not lock, so the result may be out of date if settings are being changed concurrently.
+     * @param level the {@link LogEventLevel event level} to check
+     * @return {@code false} if an event of this level would currently be discarded, {@code true} if otherwise
+     */
+    boolean isLoggable(LogEventLevel level) {
+        return fileWrite || checkVerbosityLevel(verbosity, level) || streamRegistry.hasCallbacks();
+    }
+
+    /**
+     * Internal use only. Performs the actual work of {@link #logEvent(XLoggerInterpreter, LogEventLevel, String)} once
+     * the event has been timestamped. See that method's JavaDoc for information on operation and arguments.
+     * @param time the time at which the event was logged
+     */
+    private synchronized void logEventLocked(XLoggerInterpreter caller, LogEventLevel level, String message, long time)
+    {
+        // Write out anything left over from asynchronous mode first, so that events stay in order.
+        if(!pending.isEmpty()) drainPending();
+        logEventChecked(caller, level, message, time, false);
+    }
+
+    // Callers must hold this object's lock. If deferFlush is set, log files are left for the caller to flush.
+    private void logEventChecked(XLoggerInterpreter caller, LogEventLevel level, String message, long time, boolean deferFlush)
     {
         // Check that the caller is associated. If it is not, log it and return without doing anything else.
         if(!checkCallerPermissions(caller) && caller != internal){
@@ -353,14 +493,14 @@ public class XLoggerCore
         // Check if the write stack is locked.
         if(lockLogWrites && message != null) {
             // If it's locked, add the event to the queue and return.
-            queue.add(new XLoggerLogEntry(caller, level, message));
+            queue.add(new XLoggerLogEntry(caller, level, message, time));
             return;
         }else if(!lockLogWrites && message != null){
             // If it's not, check the queue to see if it has been emptied yet.
             if(queue.size() > 0){
                 // If it has, write all of the stored messages to the log, empty the queue, and flag it as such.
                 for(XLoggerLogEntry l : queue){
-                    logEventInternal(l.caller, l.level, l.message);
+                    logEventInternal(l.caller, l.level, l.message, l.time, deferFlush);
                 }
                 queue.clear();
                 // Once done clearing the log, continue.
@@ -373,7 +513,7 @@ public class XLoggerCore
 
         // Delegate to the actual event log. If the write stack is not locked, there are no queued entries, and the message is valid,
         // this will be the only line that is called.
-        logEventInternal(caller, level, message);
+        logEventInternal(caller, level, message, time, deferFlush);
     }
 
     /**
@@ -382,12 +522,15 @@ public class XLoggerCore
      * @param caller see other method
      * @param level see other method
      * @param message see other method
+     * @param time the time at which the event was logged
+     * @param deferFlush if {@code true}, written log files are marked for a later {@link #flushDirty()} instead of
+     *                   being flushed immediately
      * @see XLoggerCore#logEvent(XLoggerInterpreter, LogEventLevel, String)
      */
-    private void logEventInternal(XLoggerInterpreter caller, LogEventLevel level, String message)
+    private void logEventInternal(XLoggerInterpreter caller, LogEventLevel level, String message, long time, boolean deferFlush)
     {
         // Compile the output data.
-        String compiled = "(" + dateFormat.format(System.currentTimeMillis()) + ") <" + level.name() + "> [" + caller.friendlyName + "]: " + message;
+        String compiled = "(" + dateFormat.format(time) + ") <" + level.name() + "> [" + caller.friendlyName + "]: " + message;
 
         // Check file write status.
         if(fileWrite) {
@@ -398,15 +541,18 @@ public class XLoggerCore
                     BufferedWriter br = bridges.get(caller).writer;
                     br.write(compiled);
                     br.newLine();
-                    br.flush();
+                    if(deferFlush) dirty.add(br);
+                    else br.flush();
 
                     // If the master-write flag is set on this caller, write a copy of the compiled data to the master logfile.
                     if(bridges.get(caller).writeToMaster && bridges.get(master) != null && bridges.get(master).writer != null){
                         BufferedWriter mr = bridges.get(master).writer;
                         mr.write(compiled);
                         mr.newLine();
-                        mr.flush();
+                        if(deferFlush) dirty.add(mr);
+                        else mr.flush();
                     }
+                    if(deferFlush) unflushed ++;
                 }
             } catch (IOException e) {
                 internal.logEvent(LogEventLevel.ERROR, "Interpreter \"" + caller.friendlyName + "\" encountered an IO error, detailed below");
@@ -422,6 +568,67 @@ public class XLoggerCore
         streamRegistry.logEventToStream(message, caller.friendlyName, level, compiled);
     }
 
+    /**
+     * Main loop of the asynchronous writer thread. Processes queued events in order as they arrive, and flushes the
+     * log files written to by them once enough events have been written or enough time has passed. Exits once
+     * asynchronous mode is disabled.
+     */
+    private void runAsyncWriter()
+    {
+        while(asyncWrite)
+        {
+            synchronized (this)
+            {
+                XLoggerLogEntry e;
+                while(unflushed < ASYNC_FLUSH_SIZE && (e = pending.poll()) != null)
+                    logEventChecked(e.caller, e.level, e.getMessage(), e.time, true);
+
+                if(unflushed >= ASYNC_FLUSH_SIZE || (unflushed > 0 && System.currentTimeMillis() - lastFlush >= ASYNC_FLUSH_INTERVAL))
+                    flushDirty();
+            }
+
+            if(!pending.isEmpty()) continue;
+
+            // Sleep until more events arrive, or until the next time-based flush is due.
+            asyncWriterIdle = true;
+            if(pending.isEmpty() && asyncWrite) {
+                long wait = unflushed > 0 ? Math.max(1, ASYNC_FLUSH_INTERVAL - (System.currentTimeMillis() - lastFlush)) : ASYNC_FLUSH_INTERVAL;
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+            }
+            asyncWriterIdle = false;
+        }
+    }
+
+    /**
+     * Internal use only. Processes all queued asynchronous events on the calling thread, then flushes all log files.
+     * Callers must hold this object's lock.
+     */
+    private void drainPending()
+    {
+        XLoggerLogEntry e;
+        while((e = pending.poll()) != null) logEventChecked(e.caller, e.level, e.getMessage(), e.time, true);
+        flushDirty();
+    }
+
+    /**
+     * Internal use only. Flushes all log files that have been written to without being flushed.
+     * Callers must hold this object's lock.
+     */
+    private void flushDirty()
+    {
+        for(BufferedWriter br : dirty){
+            try {
+                br.flush();
+            } catch (IOException e) {
+                // The writer was closed out from under its queued events (for example, during a directory change).
+                // Logging this would only queue another event, so there is nothing more to do here.
+            }
+        }
+        dirty.clear();
+        unflushed = 0;
+        lastFlush = System.currentTimeMillis();
+    }
+
     /**
      * Gets a copy (<i>NOT a reference</i>) of the current parent directory.
      * @return a File representing a copy of the parent directory File
@@ -438,6 +645,8 @@ public class XLoggerCore
      */
     private synchronized void shutDown()
     {
+        // Write out anything still waiting in the asynchronous queue, whether or not any Interpreters remain.
+        drainPending();
         if(bridges.isEmpty()) return;
 
         internal.logEvent(LogEventLevel.DEBUG, "Forced shutdown initiated by core.");
@@ -448,6 +657,9 @@ public class XLoggerCore
         // This will also cause the core writers to shut down through the disassociate method's internal hooks.
         XLoggerInterpreter[] interpreters = bridges.keySet().toArray(new XLoggerInterpreter[0]);
         for(XLoggerInterpreter x : interpreters) x.disassociate();
+
+        // Catch any events logged by the last disassociations.
+        drainPending();
     }
 
     /**
@@ -26,6 +26,10 @@ class XLoggerInputStream
         callbackRegistry.remove(cb, caller.classID);
     }
 
+    boolean hasCallbacks(){
+        return !callbackRegistry.isEmpty();
+    }
+
     // IID is the Interpreter Class ID (not unique)
     @SuppressWarnings("unchecked")
     void logEventToStream(String event, String IID, LogEventLevel level, String compiled)
@@ -1,6 +1,7 @@
 package core.CoreUtil.AUNIL;
 
 import java.io.*;
+import java.util.function.Supplier;
 
 /**
  * Part of the ARK Unified Logging System, this object provides the primary interface between the {@link XLoggerCore XLoggerCore} class and
@@ -176,6 +177,57 @@ public class XLoggerInterpreter
         this.logEvent(implicitLevel, message);
     }
 
+    /**
+     * Logs an event whose message is only built if it will actually be written somewhere. See
+     * {@link #isLoggable(LogEventLevel)} for when this is the case. Note that log files record events of every level,
+     * so the message is always built while file logging is enabled (the default); building is only skipped when file
+     * logging is off, no stream {@link Callback callbacks} are registered, and the console verbosity filters the event out.
+     * If asynchronous logging is enabled, the message is built later on the logger's background thread rather than on the
+     * calling thread, so the supplier should only capture values that will not change.
+     * Uses the specified event level instead of this object's implicit event level.
+     * @param level the overridden log event level for this event
+     * @param message a supplier that builds the message to pass to the logger core
+     * @see XLoggerInterpreter#logEvent(Supplier) for the alternate version of this method
+     */
+    public void logEvent(LogEventLevel level, Supplier<String> message) {
+        lastLogTime = System.currentTimeMillis();
+        executor.logEvent(this, level, message);
+    }
+
+    /**
+     * Logs an event whose message is only built if it will actually be written somewhere.
+     * Log event level is set to this object's implicit event level.
+     * @param message a supplier that builds the message to pass to the logger core
+     * @see XLoggerInterpreter#logEvent(LogEventLevel, Supplier) for more information
+     */
+    public void logEvent(Supplier<String> message) {
+        this.logEvent(implicitLevel, message);
+    }
+
+    /**
+     * Logs an event with a message built from a format string, as with {@link String#format(String, Object...)}.
+     * Formatting is skipped entirely if the event would not be written anywhere, and is deferred as described in
+     * {@link #logEvent(LogEventLevel, Supplier)}.
+     * @param level the overridden log event level for this event
+     * @param format the format string for the message
+     * @param args the arguments referenced by the format string
+     */
+    public void logEvent(LogEventLevel level, String format, Object... args) {
+        this.logEvent(level, () -> String.format(format, args));
+    }
+
+    /**
+     * Checks whether an event of the specified level would currently be written anywhere: to the console under the
+     * current verbosity level, to a log file, or to a stream {@link Callback}. Log files are not filtered by verbosity,
+     * so this always returns {@code true} while file logging is enabled. Useful for skipping expensive work that
+     * only exists to be logged.
+     * @param level the {@link LogEventLevel event level} to check
+     * @return {@code false} if an event of this level would currently be discarded, {@code true} if otherwise
+     */
+    public boolean isLoggable(LogEventLevel level) {
+        return executor.isLoggable(level);
+    }
+
     /**
      * Logs the provided Exception to this object's associated {@link XLoggerCore} object.
      * Uses the specified event level instead of this object's implicit event level.
@@ -250,6 +302,27 @@ public class XLoggerInterpreter
         executor.setGlobalFileLoggingEnable(this, enable);
     }
 
+    /**
+     * Gets whether or not asynchronous event processing is active on this Interpreter's associated {@link XLoggerCore core}.
+     * @return {@code true} if asynchronous logging is enabled, {@code false} if otherwise
+     */
+    public boolean isAsyncLoggingEnabled() {
+        return executor.asyncLoggingEnabled(this);
+    }
+
+    /**
+     * Enables or disables asynchronous event processing on this Interpreter's associated {@link XLoggerCore core}.
+     * While enabled, logging calls return as soon as the event has been queued, and events are written to the console,
+     * log files, and stream callbacks shortly afterwards by a background thread, with log files flushed in batches.
+     * All queued events are written out before the JVM shuts down. Disabled by default.
+     * Note that while this is enabled, {@link Callback}s that are not multithreaded are called from the background thread
+     * rather than from the thread that logged the event.
+     * @param enable the desired enable state for asynchronous logging
+     */
+    public void setAsyncLoggingEnableState(boolean enable) {
+        executor.setAsyncLoggingEnable(this, enable);
+    }
+
     /**
      * Gets the time in milliseconds since the last call to {@link XLoggerInterpreter#logEvent(LogEventLevel, String) logEvent()} or any of its overloaded
      * variants. A <i>successful</i> event log is not required, simply a call to it. If no calls to these methods
@@ -1,5 +1,7 @@
 package core.CoreUtil.AUNIL;
 
+import java.util.function.Supplier;
+
 /**
  * Data container for log data stored by the {@link XLoggerCore XLoggerCore} class.
  */
@@ -8,10 +10,50 @@ public class XLoggerLogEntry
     String message;
     LogEventLevel level;
     XLoggerInterpreter caller;
+    long time;
+    private Supplier<String> supplier;
 
-    XLoggerLogEntry(XLoggerInterpreter caller, LogEventLevel level, String message){
+    XLoggerLogEntry(XLoggerInterpreter caller, LogEventLevel level, String message, long time){
         this.caller = caller;
         this.level = level;
         this.message = message;
+        this.time = time;
+        this.supplier = null;
+    }
+
+    XLoggerLogEntry(XLoggerInterpreter caller, LogEventLevel level, Supplier<String> supplier, long time){
+        this.caller = caller;
+        this.level = level;
+        this.message = null;
+        this.time = time;
+        this.supplier = supplier;
+    }
+
+    /**
+     * Gets the message for this entry, generating it from its {@link Supplier} on the first call if it was created with one.
+     * @return the message for this entry
+     */
+    String getMessage()
+    {
+        if(supplier != null){
+            message = resolve(supplier);
+            supplier = null;
+        }
+        return message;
+    }
+
+    /**
+     * Generates a message from a {@link Supplier}. Any exception thrown by the supplier is turned into the message
+     * instead, so that a faulty message cannot take down the logging thread.
+     * @param supplier the supplier to get the message from
+     * @return the generated message
+     */
+    static String resolve(Supplier<String> supplier)
+    {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return "Unable to generate log message: " + e;
+        }
     }
 }
@@ -3,7 +3,6 @@ package core.CoreUtil;
 import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
-import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -11,6 +10,10 @@ import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
@@ -19,16 +22,52 @@ import java.util.*;
  */
 public class IOTools
 {
+    /**
+     * The default maximum time to wait for a connection to a remote server to open, in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    /**
+     * The default maximum time to wait for each read from a remote server, in milliseconds.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    /**
+     * The file extension appended to the destination file name of a resumable download while it is in progress.
+     */
+    public static final String PARTIAL_FILE_EXTENSION = ".part";
+
+    // Appended to the name of a partial file to get the name of the file that stores its remote validator (ETag or
+    // Last-Modified value), used to check that the remote file has not changed before resuming.
+    private static final String PARTIAL_INFO_EXTENSION = ".info";
+
     /**
      * Downloads a raw data file from a URL.
      * @param src the String representation of the URL to load the file from. If it is a file, the file itself will be downloaded.
      *            If not, the page HTML or XML tree will be downloaded instead
      * @param dest the location to write the downloaded file
      * @param overwrite whether or not to overwrite an existing file in the specified download location
-     * @throws IOException if there is a problem with the download or writing process, or if it takes more than 5 seconds
-     * to open the file read channel
+     * @throws IOException if there is a problem with the download or writing process, or if it takes more than
+     * the timeouts configured in {@link ARKHttpClient} to open the connection or to read any part of the file
      */
     public static void getFileFromURL(@NotNull String src, @NotNull File dest, boolean overwrite) throws IOException
+    {
+        getFileFromURL(src, dest, overwrite, ARKHttpClient.getConnectTimeout(), ARKHttpClient.getReadTimeout());
+    }
+
+    /**
+     * Downloads a raw data file from a URL, using the specified connection timeouts. HTTP and HTTPS URLs are downloaded
+     * through {@link ARKHttpClient}.
+     * If the download fails partway through, the incomplete destination file is deleted.
+     * @param src the String representation of the URL to load the file from. If it is a file, the file itself will be downloaded.
+     *            If not, the page HTML or XML tree will be downloaded instead
+     * @param dest the location to write the downloaded file
+     * @param overwrite whether or not to overwrite an existing file in the specified download location
+     * @param connectTimeout the maximum time to wait for the connection to the remote server to open, in milliseconds
+     * @param readTimeout the maximum time to wait for each read from the remote server, in milliseconds
+     * @throws IOException if there is a problem with the download or writing process, or if either timeout is exceeded
+     */
+    public static void getFileFromURL(@NotNull String src, @NotNull File dest, boolean overwrite, int connectTimeout, int readTimeout) throws IOException
     {
         if(src == null || src.length() <= 0) {
             throw new IllegalArgumentException("Input URL must not be null or zero-length!");
@@ -45,45 +84,26 @@ public class IOTools
             throw new IllegalArgumentException("Output file must not be null!");
         }
 
-        // Must be final one-element arrays for cross-thread access
-        final IOException[] thrown = new IOException[1];
-        final ReadableByteChannel[] rbc = new ReadableByteChannel[1];
-
-        // Dispatch retrieval operations to a thread to allow for timeout support
-        Thread t = new Thread(() -> {
-            try {
-                URL url = new URL(src);
-                rbc[0] = Channels.newChannel(url.openStream());
-            }catch (IOException e){
-                thrown[0] = e;
-            }
-        });
-
-        t.start();
-
-        // Default is 5 seconds (5,000 ms)
-        final long MAX_WAIT_TIME = 5000;
-        long time = System.currentTimeMillis();
-
-        // Wait at most MAX_WAIT_TIME milliseconds for the retrieval thread to finish
-        try {
-            t.join(MAX_WAIT_TIME);
-        } catch (InterruptedException ignored) {}
-
-        // Check if the thread actually finished before it joined
-        if(System.currentTimeMillis() - time >= MAX_WAIT_TIME){
-            // If it didn't (it timed out), throw an exception.
-            throw new IOException("Remote file read timed out");
+        // Timeouts are handled by the connection itself, rather than by waiting on a separate retrieval thread.
+        URL url = new URL(src);
+        InputStream in;
+        if(ARKHttpClient.isHttp(url)){
+            in = ARKHttpClient.getInputStream(ARKHttpClient.open(url, "GET", false, connectTimeout, readTimeout));
         }else{
-            // Throw any exceptions that occurred during execution
-            if(thrown[0] != null) throw thrown[0];
-
-            // If no exceptions occurred, begin the file transfer
-            FileOutputStream fos = new FileOutputStream(dest);
+            URLConnection conn = url.openConnection();
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            in = conn.getInputStream();
+        }
 
-            fos.getChannel().transferFrom(rbc[0], 0, Integer.MAX_VALUE);
+        try(ReadableByteChannel rbc = Channels.newChannel(in);
+            FileOutputStream fos = new FileOutputStream(dest)){
+            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
             fos.flush();
-            fos.close();
+        }catch (IOException e){
+            // Don't leave a partial file behind, since it would look like a complete download to anything checking for it later.
+            if(!dest.delete()) dest.deleteOnExit();
+            throw e;
         }
     }
 
@@ -93,14 +113,156 @@ public class IOTools
      *            If not, the page HTML or XML tree will be downloaded instead
      * @param dest the location to write the downloaded file
      * @param overwrite whether or not to overwrite an existing file in the specified download location
-     * @throws IOException if there is a problem with the download or writing process, or if it takes more than 5 seconds
-     * to open the file read channel
+     * @throws IOException if there is a problem with the download or writing process, or if either of the timeouts
+     * configured in {@link ARKHttpClient} is exceeded
      */
     public static void getFileFromURL(@NotNull URL src, @NotNull File dest, boolean overwrite) throws IOException
     {
         getFileFromURL(src.toString(), dest, overwrite);
     }
 
+    /**
+     * Downloads a raw data file from a URL, resuming any previous incomplete download of the same file.
+     * Data is written to a partial file (the destination file name with {@link #PARTIAL_FILE_EXTENSION} appended), which
+     * is renamed to the destination file once the download is complete. If the download fails, the partial file is kept,
+     * and the next call to this method for the same destination will request only the remaining data using an HTTP
+     * {@code Range} request. If the server does not support range requests, or the remote file has changed since the
+     * partial file was written, the download restarts from the beginning.
+     * Non-HTTP URLs are downloaded as per {@link #getFileFromURL(String, File, boolean, int, int)}.
+     * @param src the String representation of the URL to load the file from
+     * @param dest the location to write the downloaded file
+     * @param overwrite whether or not to overwrite an existing file in the specified download location
+     * @param connectTimeout the maximum time to wait for the connection to the remote server to open, in milliseconds
+     * @param readTimeout the maximum time to wait for each read from the remote server, in milliseconds
+     * @throws IOException if there is a problem with the download or writing process, if either timeout is exceeded,
+     * or if the connection closes before the entire file is received
+     */
+    public static void getFileFromURLResumable(@NotNull String src, @NotNull File dest, boolean overwrite, int connectTimeout, int readTimeout) throws IOException
+    {
+        if(src == null || src.length() <= 0) {
+            throw new IllegalArgumentException("Input URL must not be null or zero-length!");
+        }
+
+        if(dest == null) throw new IllegalArgumentException("Output file must not be null!");
+        if(dest.exists() && !overwrite) throw new IOException("Destination file already exists");
+
+        URL url = new URL(src);
+        if(!ARKHttpClient.isHttp(url)){
+            getFileFromURL(src, dest, overwrite, connectTimeout, readTimeout);
+            return;
+        }
+
+        File part = new File(dest.getAbsolutePath() + PARTIAL_FILE_EXTENSION);
+        File info = new File(part.getAbsolutePath() + PARTIAL_INFO_EXTENSION);
+
+        // Ranges apply to the encoded response body, so the response must not be compressed.
+        HttpURLConnection conn = ARKHttpClient.open(url, "GET", false, connectTimeout, readTimeout);
+
+        // Only resume if we know which version of the remote file the partial data came from. If-Range makes the server
+        // send the entire file instead of a range if that version is no longer current.
+        long offset = part.exists() ? part.length() : 0;
+        String validator = offset > 0 && info.exists() ? new String(loadDataBytesFromFile(info), "UTF-8").trim() : null;
+        if(validator != null && !validator.isEmpty()){
+            conn.setRequestProperty("Range", "bytes=" + offset + "-");
+            conn.setRequestProperty("If-Range", validator);
+        }else offset = 0;
+
+        int code = conn.getResponseCode();
+        long total;
+        if(code == 416){
+            // The requested range is past the end of the remote file, so the partial file cannot belong to it. Start over.
+            ARKHttpClient.discard(conn.getErrorStream());
+            if(!part.delete() || (info.exists() && !info.delete())) throw new IOException("Unable to delete stale partial file");
+            getFileFromURLResumable(src, dest, overwrite, connectTimeout, readTimeout);
+            return;
+        }else if(code == HttpURLConnection.HTTP_PARTIAL){
+            long[] range = parseContentRange(conn.getHeaderField("Content-Range"));
+            if(range == null || range[0] != offset){
+                conn.disconnect();
+                if(!part.delete()) part.deleteOnExit();
+                throw new IOException("Server returned an invalid partial response");
+            }
+            total = range[2];
+        }else if(code >= 200 && code < 300){
+            offset = 0;
+            total = conn.getContentLengthLong();
+        }else{
+            // Let the client throw its usual exception for this response code.
+            ARKHttpClient.getInputStream(conn).close();
+            throw new IOException("Server returned HTTP response code: " + code + " for URL: " + src);
+        }
+
+        // Record the version of the remote file being downloaded before writing anything, so that an interrupted
+        // download can be resumed later.
+        String newValidator = conn.getHeaderField("ETag");
+        if(newValidator == null) newValidator = conn.getHeaderField("Last-Modified");
+        if(newValidator != null){
+            try(FileOutputStream fos = new FileOutputStream(info)){
+                fos.write(newValidator.getBytes("UTF-8"));
+            }
+        }else if(info.exists() && !info.delete()) info.deleteOnExit();
+
+        // Counts are kept as longs throughout, so there is no limit on file size.
+        long received = offset;
+        try(InputStream is = ARKHttpClient.getInputStream(conn);
+            FileOutputStream fos = new FileOutputStream(part, offset > 0)){
+            byte[] buffer = new byte[65536];
+            int read;
+            while((read = is.read(buffer)) != -1){
+                fos.write(buffer, 0, read);
+                received += read;
+            }
+            fos.flush();
+        }
+
+        if(total >= 0 && received != total)
+            throw new IOException("Remote file transfer incomplete: received " + received + " of " + total + " bytes");
+
+        // Swap the completed file into place in a single step where possible, so that the destination file never
+        // exists in an incomplete state.
+        try {
+            Files.move(part.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if(info.exists() && !info.delete()) info.deleteOnExit();
+    }
+
+    /**
+     * Same as {@link #getFileFromURLResumable(String, File, boolean, int, int)}, using the timeouts configured in {@link ARKHttpClient}.
+     * @param src the URL to load the file from
+     * @param dest the location to write the downloaded file
+     * @param overwrite whether or not to overwrite an existing file in the specified download location
+     * @throws IOException if there is a problem with the download or writing process
+     */
+    public static void getFileFromURLResumable(@NotNull URL src, @NotNull File dest, boolean overwrite) throws IOException
+    {
+        getFileFromURLResumable(src.toString(), dest, overwrite, ARKHttpClient.getConnectTimeout(), ARKHttpClient.getReadTimeout());
+    }
+
+    // Parses an HTTP Content-Range header of the form "bytes start-end/total" into {start, end, total}.
+    // The total is -1 if the server does not know it. Returns null if the header is missing or malformed.
+    private static long[] parseContentRange(@Nullable String header)
+    {
+        if(header == null || !header.trim().startsWith("bytes ")) return null;
+
+        try{
+            String value = header.trim().substring(6);
+            int dash = value.indexOf('-');
+            int slash = value.indexOf('/');
+            if(dash < 0 || slash < dash) return null;
+
+            long start = Long.parseLong(value.substring(0, dash).trim());
+            long end = Long.parseLong(value.substring(dash + 1, slash).trim());
+            String totalStr = value.substring(slash + 1).trim();
+            long total = totalStr.equals("*") ? -1 : Long.parseLong(totalStr);
+            return new long[]{start, end, total};
+        }catch (NumberFormatException e){
+            return null;
+        }
+    }
+
     /**
      * gotta do a ping test, y'know
      * @param src the URL to do a ping test on
@@ -146,6 +308,7 @@ public class IOTools
 
     /**
      * Downloads bytes from a URL by opening a stream and reading raw bytes in chunks of 8192 bytes each.
+     * HTTP and HTTPS URLs are downloaded through {@link ARKHttpClient}, and compressed responses are decoded.
      * @param src the URL to download bytes from
      * @return the contents of the specified URL as a byte array
      * @throws IOException if there is an error reading from the URL
@@ -153,38 +316,58 @@ public class IOTools
     public static byte[] getBytesFromURL(@NotNull String src) throws IOException
     {
         URL srv = new URL(src);
-        //if(getRemoteFileSize(srv) <= 0) return new byte[0];
-
-        InputStream in = srv.openStream();
-        ByteArrayOutputStream bs = new ByteArrayOutputStream();
 
-        byte[] buffer = new byte[8192];
+        // Closing the stream after reading it to the end returns its connection to the keep-alive pool.
+        try(InputStream in = ARKHttpClient.isHttp(srv) ? ARKHttpClient.getInputStream(ARKHttpClient.open(srv)) : srv.openStream())
+        {
+            ByteArrayOutputStream bs = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
 
-        int read;
-        do{
-            read = in.read(buffer);
-            if(read > 0) bs.write(buffer, 0, read);
-        }while (read > 0);
+            int read;
+            while((read = in.read(buffer)) != -1) bs.write(buffer, 0, read);
 
-        return bs.toByteArray();
+            return bs.toByteArray();
+        }
     }
 
     /**
-     * Gets a string representation of the bytes at a URL. Uses {@link IOTools#getBytesFromURL(String)} to download data.
+     * Gets the text at a URL. The response is decoded as it is received, using the character set specified by the server
+     * (or UTF-8 if it did not specify one), so the raw bytes are never held in memory all at once.
      * @param src the URL to download data from
      * @return the contents of the specified URL as a String
      * @throws IOException if there is an error reading from the URL
      */
     public static String getStringFromURL(@NotNull String src) throws IOException
     {
-        char[] buffer = ARKArrayUtil.byteToCharArray(getBytesFromURL(src));
+        try(Reader reader = getReaderFromURL(src))
+        {
+            StringBuilder st = new StringBuilder(8192);
+            char[] buffer = new char[8192];
 
-        StringBuilder st = new StringBuilder();
-        for(char c : buffer){
-            st.append(c);
+            int read;
+            while((read = reader.read(buffer)) != -1) st.append(buffer, 0, read);
+
+            return st.toString();
         }
+    }
 
-        return st.toString();
+    /**
+     * Opens a {@link Reader} on the text at a URL, for callers that can parse a response as it arrives rather than
+     * loading all of it first. The response is decoded using the character set specified by the server, or UTF-8 if it
+     * did not specify one. HTTP and HTTPS URLs are opened through {@link ARKHttpClient}.
+     * The reader must be closed once it has been read, so that its connection can be reused.
+     * @param src the URL to read from
+     * @return a reader over the decoded contents of the specified URL. Not buffered beyond the decoder's own internal buffer.
+     * @throws IOException if there is an error opening the URL
+     */
+    public static Reader getReaderFromURL(@NotNull String src) throws IOException
+    {
+        URL srv = new URL(src);
+        if(!ARKHttpClient.isHttp(srv)) return new InputStreamReader(srv.openStream(), StandardCharsets.UTF_8);
+
+        HttpURLConnection conn = ARKHttpClient.open(srv);
+        InputStream in = ARKHttpClient.getInputStream(conn);
+        return new InputStreamReader(in, ARKHttpClient.getCharset(conn));
     }
 
     /**
@@ -323,7 +506,7 @@ public class IOTools
         }
 
         URL target = new URL(url);
-        URLConnection con = target.openConnection();
+        URLConnection con = ARKHttpClient.isHttp(target) ? ARKHttpClient.open(target, "POST", false) : target.openConnection();
         con.setDoOutput(true);
 
         PrintWriter wr = new PrintWriter(con.getOutputStream(), true);
@@ -341,7 +524,8 @@ public class IOTools
         wr.print(parameters);
         wr.close();
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(con.getInputStream()));
+        InputStream in = con instanceof HttpURLConnection ? ARKHttpClient.getInputStream((HttpURLConnection)con) : con.getInputStream();
+        BufferedReader br = new BufferedReader(new InputStreamReader(in));
         StringBuilder result = new StringBuilder();
         String line;
         while((line = br.readLine()) != null) result.append(line);
@@ -354,22 +538,19 @@ public class IOTools
      * Gets the size of a remote URL, be it a file or a page, by sending it an HTTP HEAD request for its content-length attribute.
      * Sourced from the Stack Overflow user 'user1723178'.
      * @param url the URL to check
-     * @return the size of the URL's content in bytes
+     * @return the size of the URL's content in bytes, or -1 if the URL is not an HTTP or HTTPS URL
+     * @throws IOException if the server did not report the size of the URL's content
      */
     public static int getRemoteFileSize(@NotNull URL url) throws IOException
     {
-        HttpURLConnection conn = null;
-        try {
-            if ("http".equals(url.getProtocol())) conn = (HttpURLConnection) url.openConnection();
-            else if ("https".equals(url.getProtocol())) conn = (HttpsURLConnection) url.openConnection();
-            else return -1;
-
-            int len = conn.getContentLength();
-            if(len < 0) throw new IOException("File size unknown; server returned HTTP code: " + conn.getResponseCode());
-            else return len;
-        } finally {
-            if(conn != null) conn.disconnect();
-        }
+        if(!ARKHttpClient.isHttp(url)) return -1;
+
+        // HEAD responses have no body, so the connection goes back to the keep-alive pool as soon as the headers are read.
+        // The length must be that of the uncompressed content.
+        HttpURLConnection conn = ARKHttpClient.open(url, "HEAD", false);
+        int len = conn.getContentLength();
+        if(len < 0) throw new IOException("File size unknown; server returned HTTP code: " + conn.getResponseCode());
+        else return len;
     }
 
     /**